@@ -0,0 +1,43 @@
+package bench;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import service.TaskManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Заготовки досок для бенчмарков.
+// Задача номер i занимает [i часов, i часов + 30 минут) от BASE, вторая половина каждого часа свободна.
+final class Boards {
+    static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 0, 0);
+    static final Duration SLOT = Duration.ofMinutes(30);
+
+    private Boards() {
+    }
+
+    static LocalDateTime busySlot(long hour) {
+        return BASE.plusHours(hour);
+    }
+
+    static LocalDateTime freeSlot(long hour) {
+        return BASE.plusHours(hour).plus(SLOT);
+    }
+
+    // Заполняет менеджер: size задач, из них половина - подзадачи одного эпика. Возвращает эпик.
+    static Epic fill(TaskManager manager, int size) {
+        Epic epic = new Epic("epic", "benchmark epic");
+        manager.addEpic(epic);
+        for (int i = 0; i < size; i++) {
+            if (i % 2 == 0) {
+                manager.addTask(new Task("task " + i, "description " + i, Status.NEW, SLOT, busySlot(i)));
+            } else {
+                Status status = i % 3 == 0 ? Status.DONE : Status.NEW;
+                manager.addSubtask(new Subtask("subtask " + i, "description " + i, status, epic.getId(), SLOT, busySlot(i)));
+            }
+        }
+        return epic;
+    }
+}
@@ -0,0 +1,78 @@
+package bench;
+
+import model.Status;
+import model.Task;
+import org.openjdk.jmh.annotations.*;
+import service.Durability;
+import service.FileBackedTaskManager;
+import service.FlushPolicy;
+import service.SaveMode;
+import service.StorageConfig;
+import service.TaskJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Цена надёжности записи: полный снимок и одна запись журнала в режимах NONE, ATOMIC и FSYNC.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurabilityBenchmark {
+    @Param({"1000", "100000"})
+    public int boardSize;
+
+    @Param({"NONE", "ATOMIC", "FSYNC"})
+    public Durability durability;
+
+    private File snapshotFile;
+    private File journalFile;
+    private FileBackedTaskManager snapshotManager;
+    private FileBackedTaskManager journalManager;
+    private Task journaled;
+    private boolean done;
+
+    @Setup(Level.Trial)
+    public void createBoards() throws IOException {
+        snapshotFile = File.createTempFile("kanban-durability", ".csv");
+        // доска наполняется без записи на диск, измеряется только save()
+        snapshotManager = new FileBackedTaskManager(snapshotFile.getPath(), StorageConfig.defaults()
+                .withDurability(durability)
+                .withFlushPolicy(FlushPolicy.GROUP_COMMIT, Duration.ofDays(1)));
+        Boards.fill(snapshotManager, boardSize);
+
+        journalFile = File.createTempFile("kanban-durability", ".csv");
+        journalManager = new FileBackedTaskManager(journalFile.getPath(), StorageConfig.defaults()
+                .withSaveMode(SaveMode.JOURNAL)
+                .withDurability(durability));
+        journaled = new Task("journaled", "description", Status.NEW, null, null);
+        journalManager.addTask(journaled);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        snapshotManager.close();
+        journalManager.close();
+        Files.deleteIfExists(snapshotFile.toPath());
+        Files.deleteIfExists(journalFile.toPath());
+        Files.deleteIfExists(TaskJournal.pathFor(journalFile.toPath()));
+    }
+
+    @Benchmark
+    public void saveSnapshot() {
+        snapshotManager.save();
+    }
+
+    // Одна синхронная запись в журнал: обновление задачи.
+    @Benchmark
+    public void appendJournal() {
+        done = !done;
+        journalManager.updateTask(new Task(journaled.getId(), "journaled", "description",
+                done ? Status.DONE : Status.NEW, null, null));
+    }
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Пересчёт статуса и времени эпика: точечная замена подзадачи против полного пересчёта списка.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EpicBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int subtaskCount;
+
+    private Epic epic;
+    private List<Subtask> subtasks;
+
+    @Setup(Level.Trial)
+    public void createEpic() {
+        epic = new Epic(1, "epic", "benchmark epic");
+        subtasks = new ArrayList<>(subtaskCount);
+        for (int i = 0; i < subtaskCount; i++) {
+            subtasks.add(new Subtask(i + 2, "subtask " + i, "description", Status.NEW, 1, Boards.SLOT, Boards.busySlot(i)));
+        }
+        epic.setSubtasks(new ArrayList<>(subtasks));
+    }
+
+    @Benchmark
+    public Status replaceSubtask() {
+        int position = ThreadLocalRandom.current().nextInt(subtaskCount);
+        Status status = Status.values()[position % Status.values().length];
+        epic.replaceSubtask(new Subtask(position + 2, "subtask", "description", status, 1, Boards.SLOT, Boards.busySlot(position)));
+        return epic.getStatus();
+    }
+
+    @Benchmark
+    public Status recalculateAll() {
+        epic.setSubtasks(epic.getSubtasks());
+        return epic.getStatus();
+    }
+}
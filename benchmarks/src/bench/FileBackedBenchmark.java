@@ -0,0 +1,59 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import service.FileBackedTaskManager;
+import service.FlushPolicy;
+import service.SnapshotFormat;
+import service.StorageConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Полная запись снимка и загрузка из файла для CSV и двоичного формата.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBackedBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int boardSize;
+
+    @Param({"CSV", "BINARY"})
+    public SnapshotFormat format;
+
+    private File file;
+    private FileBackedTaskManager manager;
+
+    @Setup(Level.Trial)
+    public void createBoard() throws IOException {
+        file = File.createTempFile("kanban-bench", ".data");
+        // доска наполняется без записи на диск, снимок пишется один раз в конце
+        StorageConfig config = StorageConfig.defaults()
+                .withSnapshotFormat(format)
+                .withFlushPolicy(FlushPolicy.GROUP_COMMIT, Duration.ofDays(1));
+        manager = new FileBackedTaskManager(file.getPath(), config);
+        Boards.fill(manager, boardSize);
+        manager.save();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        manager.close();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public void save() {
+        manager.save();
+    }
+
+    @Benchmark
+    public FileBackedTaskManager loadFromFile() {
+        return FileBackedTaskManager.loadFromFile(file);
+    }
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import org.openjdk.jmh.annotations.*;
+import service.BatchOutcome;
+import service.FileBackedTaskManager;
+import service.SaveMode;
+import service.TaskJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Импорт проекта в журналируемый менеджер: по одной подзадаче через addSubtask против одного addAll.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ImportBenchmark {
+    @Param({"1000", "10000"})
+    public int importSize;
+
+    private File file;
+    private FileBackedTaskManager manager;
+    private List<Subtask> subtasks;
+
+    @Setup(Level.Invocation)
+    public void prepare() throws IOException {
+        file = File.createTempFile("kanban-import", ".csv");
+        manager = new FileBackedTaskManager(file.getPath(), SaveMode.JOURNAL);
+        Epic epic = new Epic("epic", "imported epic");
+        manager.addEpic(epic);
+        subtasks = new ArrayList<>(importSize);
+        for (int i = 0; i < importSize; i++) {
+            subtasks.add(new Subtask("subtask " + i, "description " + i, Status.NEW, epic.getId(), Boards.SLOT, Boards.busySlot(i)));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteFiles() throws IOException {
+        manager.close();
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(TaskJournal.pathFor(file.toPath()));
+    }
+
+    @Benchmark
+    public FileBackedTaskManager oneByOne() {
+        for (Subtask subtask : subtasks) {
+            manager.addSubtask(subtask);
+        }
+        return manager;
+    }
+
+    @Benchmark
+    public List<BatchOutcome> addAll() {
+        return manager.addAll(subtasks);
+    }
+}
@@ -0,0 +1,76 @@
+package bench;
+
+import service.IntObjectMap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.function.IntFunction;
+
+// Память на запись: HashMap<Integer, V> против IntObjectMap<V>.
+// Это не JMH-бенчмарк: считается прирост кучи после сборки мусора, пока заполненная карта жива.
+// Значения у всех записей общие, так что в результат входит только сама таблица (и Integer у HashMap).
+// Запуск: bench.MapFootprint [entries], по умолчанию 1 000 000.
+public class MapFootprint {
+    private static final Object VALUE = new Object();
+    // держит заполненную карту живой, пока снимается замер после заполнения
+    private static Object retained;
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        // прогрев: первый замер включает мусор от загрузки классов и связывания лямбд
+        measure(1_000, MapFootprint::fillIntObjectMap);
+        measure(1_000, MapFootprint::fillHashMap);
+        // печать между замерами тоже оставляет мусор, поэтому сначала оба замера
+        long intObjectMapBytes = measure(entries, MapFootprint::fillIntObjectMap);
+        long hashMapBytes = measure(entries, MapFootprint::fillHashMap);
+        report("IntObjectMap<V>", intObjectMapBytes, entries);
+        report("HashMap<Integer, V>", hashMapBytes, entries);
+    }
+
+    private static long measure(int entries, IntFunction<Object> fill) {
+        long before = usedHeap();
+        retained = fill.apply(entries);
+        long bytes = usedHeap() - before;
+        retained = null;
+        return bytes;
+    }
+
+    private static Object fillIntObjectMap(int entries) {
+        IntObjectMap<Object> map = new IntObjectMap<>();
+        for (int id = 0; id < entries; id++) {
+            map.put(id, VALUE);
+        }
+        return map;
+    }
+
+    private static Object fillHashMap(int entries) {
+        HashMap<Integer, Object> map = new HashMap<>();
+        for (int id = 0; id < entries; id++) {
+            map.put(id, VALUE);
+        }
+        return map;
+    }
+
+    private static void report(String name, long bytes, int entries) {
+        System.out.printf("%-20s %6.1f bytes/entry%n", name, (double) bytes / entries);
+    }
+
+    // Живые объекты после полной сборки: она переносит всё живое из eden, поэтому eden не считается.
+    // Runtime.freeMemory() для этого не годится: в занятое попадает весь буфер выделения потока (TLAB),
+    // полученный уже после сборки, и замер плавает на мегабайты.
+    private static long usedHeap() {
+        // одной сборки мало: только что отпущенная карта иногда переживает первую
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && !pool.getName().contains("Eden")) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+}
@@ -0,0 +1,78 @@
+package bench;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.openjdk.jmh.annotations.*;
+import service.InMemoryTaskManager;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Горячие пути InMemoryTaskManager на досках разного размера.
+// Добавленная задача сразу удаляется, чтобы размер доски не менялся между итерациями.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskManagerBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int boardSize;
+
+    private InMemoryTaskManager manager;
+    private Epic epic;
+
+    @Setup(Level.Trial)
+    public void createBoard() {
+        manager = new InMemoryTaskManager();
+        epic = Boards.fill(manager, boardSize);
+    }
+
+    private long randomHour() {
+        return ThreadLocalRandom.current().nextInt(boardSize);
+    }
+
+    @Benchmark
+    public Task addTaskWithOverlapCheck() {
+        Task task = new Task("new task", "description", Status.NEW, Boards.SLOT, Boards.freeSlot(randomHour()));
+        manager.addTask(task);
+        manager.deleteTask(task);
+        return task;
+    }
+
+    @Benchmark
+    public Subtask addSubtaskWithOverlapCheck() {
+        Subtask subtask = new Subtask("new subtask", "description", Status.IN_PROGRESS, epic.getId(), Boards.SLOT, Boards.freeSlot(randomHour()));
+        manager.addSubtask(subtask);
+        manager.deleteSubtask(subtask);
+        return subtask;
+    }
+
+    @Benchmark
+    public boolean rejectOverlappingTask() {
+        Task task = new Task("conflict", "description", Status.NEW, Boards.SLOT, Boards.busySlot(randomHour()));
+        return manager.isTaskOverlapping(task);
+    }
+
+    @Benchmark
+    public Task getTaskByIdWithHistory() {
+        // у задач чётные позиции на доске, id = позиция + 2 (id 1 занят эпиком)
+        int position = (int) randomHour() & ~1;
+        return manager.getTaskById(position + 2);
+    }
+
+    @Benchmark
+    public List<Task> getPrioritizedTasks() {
+        return manager.getPrioritizedTasks();
+    }
+
+    // страница из 50 задач с произвольного места доски - так опрашивает расписание дашборд
+    @Benchmark
+    public List<Task> getPrioritizedPage() {
+        return manager.getPrioritizedTasks(Boards.busySlot(randomHour()), 50);
+    }
+}
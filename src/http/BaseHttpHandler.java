@@ -0,0 +1,107 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import model.Task;
+import service.ManagerSaveException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+
+// Общая часть обработчиков: разбор ошибок в коды ответа и отправка JSON.
+// Соединение остаётся открытым для следующего запроса, только если тело запроса прочитано,
+// а у ответа известна длина или он передаётся кусками - так отвечают все методы send*.
+abstract class BaseHttpHandler implements HttpHandler {
+    private static final String CONTENT_TYPE = "application/json;charset=utf-8";
+    // размер буфера потоковой записи: примерно столько байт уходит одним куском
+    private static final int STREAM_BUFFER = 16 * 1024;
+
+    protected final ManagerAccess access;
+
+    protected BaseHttpHandler(ManagerAccess access) {
+        this.access = access;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (NotFoundException e) {
+                sendError(exchange, 404, e.getMessage());
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (ManagerSaveException e) {
+                sendError(exchange, 500, e.getMessage());
+            }
+        }
+    }
+
+    protected abstract void route(HttpExchange exchange) throws IOException;
+
+    protected String readBody(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    protected void sendJson(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    protected void sendTask(HttpExchange exchange, int code, Task task) throws IOException {
+        sendJson(exchange, code, TaskJson.toJson(task));
+    }
+
+    // Список пишется по мере обхода кусками (chunked), без сборки всего ответа в памяти.
+    protected void sendList(HttpExchange exchange, Iterable<? extends Task> tasks) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8),
+                STREAM_BUFFER)) {
+            out.write('[');
+            boolean first = true;
+            for (Task task : tasks) {
+                if (!first) {
+                    out.write(',');
+                }
+                TaskJson.write(task, out);
+                first = false;
+            }
+            out.write(']');
+        }
+    }
+
+    protected void sendEmpty(HttpExchange exchange, int code) throws IOException {
+        exchange.sendResponseHeaders(code, -1);
+    }
+
+    protected void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // заголовки уже ушли, остаётся только оборвать ответ
+            throw new IOException(message);
+        }
+        sendJson(exchange, code, "{\"error\":" + TaskJson.quote(message) + "}");
+    }
+
+    protected void sendMethodNotAllowed(HttpExchange exchange, String allowed) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        sendError(exchange, 405, "Метод " + exchange.getRequestMethod() + " не поддерживается");
+    }
+
+    static final class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFoundException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package http;
+
+import com.sun.net.httpserver.HttpServer;
+import model.TaskType;
+import service.Managers;
+import service.TaskManager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP-интерфейс менеджера задач на com.sun.net.httpserver.
+// Каждый запрос обрабатывается в своём виртуальном потоке, поэтому тысячи одновременных клиентов
+// не требуют тысяч потоков ОС, а ожидание менеджера или сети не занимает поток-носитель.
+// Соединения HTTP/1.1 остаются открытыми между запросами (keep-alive). Для многопоточной нагрузки лучше
+// передавать ConcurrentTaskManager: остальные менеджеры обрабатывают запросы по одному (см. ManagerAccess).
+public class HttpTaskServer {
+    public static final int PORT = 8080;
+    // очередь соединений, которые ОС уже приняла, а сервер ещё не забрал
+    private static final int BACKLOG = 1024;
+
+    static {
+        // сколько keep-alive соединений может простаивать одновременно (по умолчанию 200);
+        // читается при создании первого HttpServer в JVM, явно заданное значение не меняется
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public HttpTaskServer(TaskManager manager) throws IOException {
+        this(manager, PORT);
+    }
+
+    // Порт 0 - любой свободный, его возвращает getPort().
+    public HttpTaskServer(TaskManager manager, int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        ManagerAccess access = new ManagerAccess(manager);
+        server.createContext("/tasks", new TaskHandler(access, TaskType.TASK, "/tasks"));
+        server.createContext("/epics", new TaskHandler(access, TaskType.EPIC, "/epics"));
+        server.createContext("/subtasks", new TaskHandler(access, TaskType.SUBTASK, "/subtasks"));
+        server.createContext("/history", new ListHandler(access, "/history", ManagerAccess::history));
+        server.createContext("/prioritized", new ListHandler(access, "/prioritized", ManagerAccess::prioritized));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Закрывает соединения и дожидается запросов, которые уже обрабатываются.
+    public void stop() {
+        server.stop(0);
+        executor.close();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        HttpTaskServer server = new HttpTaskServer(Managers.getConcurrent());
+        server.start();
+        System.out.println("HTTP-сервер запущен на порту " + server.getPort());
+    }
+}
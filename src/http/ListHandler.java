@@ -0,0 +1,33 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import model.Task;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+// /history и /prioritized: только GET, список отдаётся потоком.
+class ListHandler extends BaseHttpHandler {
+    private final String root;
+    private final Function<ManagerAccess, List<Task>> source;
+
+    ListHandler(ManagerAccess access, String root, Function<ManagerAccess, List<Task>> source) {
+        super(access);
+        this.root = root;
+        this.source = source;
+    }
+
+    @Override
+    protected void route(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.equals(root) && !path.equals(root + "/")) {
+            throw new NotFoundException("Неизвестный путь: " + path);
+        }
+        if (!exchange.getRequestMethod().equals("GET")) {
+            sendMethodNotAllowed(exchange, "GET");
+            return;
+        }
+        sendList(exchange, source.apply(access));
+    }
+}
@@ -0,0 +1,97 @@
+package http;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+import service.ConcurrentTaskManager;
+import service.InMemoryTaskManager;
+import service.TaskManager;
+import service.TaskSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Доступ обработчиков к менеджеру из многих виртуальных потоков.
+// ConcurrentTaskManager вызывается напрямую, остальные менеджеры - по одному запросу за раз под lock.
+// ReentrantLock, а не synchronized: ожидающий виртуальный поток не занимает поток-носитель.
+// Списки для потоковой отдачи не должны меняться во время записи ответа, поэтому у InMemoryTaskManager
+// они берутся из snapshot() за O(1), а у прочих менеджеров копируются под блокировкой.
+final class ManagerAccess {
+    private final TaskManager manager;
+    // null для ConcurrentTaskManager
+    private final ReentrantLock lock;
+
+    ManagerAccess(TaskManager manager) {
+        this.manager = manager;
+        this.lock = manager instanceof ConcurrentTaskManager ? null : new ReentrantLock();
+    }
+
+    <T> T call(Supplier<T> action) {
+        if (lock == null) {
+            return action.get();
+        }
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    TaskManager manager() {
+        return manager;
+    }
+
+    Collection<? extends Task> list(TaskType type) {
+        if (lock == null) {
+            return view(type);
+        }
+        if (manager instanceof InMemoryTaskManager) {
+            TaskSnapshot snapshot = call(((InMemoryTaskManager) manager)::snapshot);
+            return switch (type) {
+                case TASK -> snapshot.getTasks();
+                case EPIC -> snapshot.getEpics();
+                case SUBTASK -> snapshot.getSubtasks();
+            };
+        }
+        return call(() -> new ArrayList<>(view(type)));
+    }
+
+    List<Task> prioritized() {
+        if (lock == null) {
+            return manager.getPrioritizedTasks();
+        }
+        if (manager instanceof InMemoryTaskManager) {
+            return call(((InMemoryTaskManager) manager)::snapshot).getPrioritizedTasks();
+        }
+        return call(manager::getPrioritizedTasks);
+    }
+
+    List<Task> history() {
+        return call(manager::getHistory);
+    }
+
+    // Подзадачи эпика или null, если эпика нет. Эпик ищется без getEpicById, чтобы запрос не попадал в историю.
+    List<Subtask> subtasksOf(int epicId) {
+        return call(() -> {
+            for (Epic epic : manager.getEpicView()) {
+                if (epic.getId() == epicId) {
+                    return new ArrayList<>(manager.getSubtasksInEpic(epic));
+                }
+            }
+            return null;
+        });
+    }
+
+    private Collection<? extends Task> view(TaskType type) {
+        return switch (type) {
+            case TASK -> manager.getTaskView();
+            case EPIC -> manager.getEpicView();
+            case SUBTASK -> manager.getSubtaskView();
+        };
+    }
+}
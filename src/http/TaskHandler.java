@@ -0,0 +1,151 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+import service.BatchOutcome;
+import service.TaskManager;
+
+import java.io.IOException;
+import java.util.List;
+
+// /tasks, /epics и /subtasks:
+//   GET    /{path}              - все задачи типа
+//   GET    /{path}/{id}         - задача по id (попадает в историю)
+//   GET    /epics/{id}/subtasks - подзадачи эпика
+//   POST   /{path}              - создание (без id) или обновление (с id)
+//   DELETE /{path}/{id}         - удаление, DELETE /{path} очищает все задачи типа
+// Создание, обновление и удаление идут через addAll, updateAll и deleteAll с одним элементом:
+// BatchOutcome сразу даёт код ответа, а поиск задачи не засоряет историю просмотров.
+class TaskHandler extends BaseHttpHandler {
+    private final TaskType type;
+    private final String root;
+
+    TaskHandler(ManagerAccess access, TaskType type, String root) {
+        super(access);
+        this.type = type;
+        this.root = root;
+    }
+
+    @Override
+    protected void route(HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().substring(root.length()).split("/");
+        // path[0] - пустая строка перед первым '/'
+        if (path.length > 3 || path.length > 0 && !path[0].isEmpty()) {
+            throw new NotFoundException("Неизвестный путь: " + exchange.getRequestURI().getPath());
+        }
+        Integer id = path.length > 1 ? Integer.parseInt(path[1]) : null;
+        boolean epicSubtasks = path.length == 3;
+        if (epicSubtasks && (type != TaskType.EPIC || !path[2].equals("subtasks"))) {
+            throw new NotFoundException("Неизвестный путь: " + exchange.getRequestURI().getPath());
+        }
+
+        switch (exchange.getRequestMethod()) {
+            case "GET" -> {
+                if (id == null) {
+                    sendList(exchange, access.list(type));
+                } else if (epicSubtasks) {
+                    List<Subtask> subtasks = access.subtasksOf(id);
+                    if (subtasks == null) {
+                        throw new NotFoundException("Эпик с id " + id + " не найден");
+                    }
+                    sendList(exchange, subtasks);
+                } else {
+                    Task task = access.call(() -> find(access.manager(), id));
+                    if (task == null) {
+                        throw new NotFoundException(notFound(id));
+                    }
+                    sendTask(exchange, 200, task);
+                }
+            }
+            case "POST" -> {
+                if (epicSubtasks) {
+                    sendMethodNotAllowed(exchange, "GET");
+                } else if (id != null) {
+                    // задача передаётся в теле запроса, а не в пути
+                    sendMethodNotAllowed(exchange, "GET, DELETE");
+                } else {
+                    post(exchange, TaskJson.fromJson(readBody(exchange), type));
+                }
+            }
+            case "DELETE" -> {
+                if (epicSubtasks) {
+                    sendMethodNotAllowed(exchange, "GET");
+                } else if (id == null) {
+                    access.call(() -> {
+                        clear(access.manager());
+                        return null;
+                    });
+                    sendEmpty(exchange, 200);
+                } else {
+                    Task stub = stub(id);
+                    BatchOutcome outcome = access.call(() -> access.manager().deleteAll(List.of(stub)).get(0));
+                    respond(exchange, outcome, id, null);
+                }
+            }
+            default -> sendMethodNotAllowed(exchange, epicSubtasks ? "GET" : "GET, POST, DELETE");
+        }
+    }
+
+    private void post(HttpExchange exchange, Task task) throws IOException {
+        boolean created = task.getId() == 0;
+        BatchOutcome outcome = access.call(() -> {
+            List<BatchOutcome> outcomes = created
+                    ? access.manager().addAll(List.of(task))
+                    : access.manager().updateAll(List.of(task));
+            return outcomes.get(0);
+        });
+        respond(exchange, outcome, task.getId(), task);
+    }
+
+    // task - тело ответа 201, для удаления null
+    private void respond(HttpExchange exchange, BatchOutcome outcome, int id, Task task) throws IOException {
+        switch (outcome) {
+            case APPLIED -> {
+                if (task == null) {
+                    sendEmpty(exchange, 200);
+                } else {
+                    sendTask(exchange, 201, task);
+                }
+            }
+            case OVERLAPPING -> sendError(exchange, 406, "Задача пересекается по времени с другими задачами");
+            case NOT_FOUND -> sendError(exchange, 404, notFound(id));
+            case EPIC_NOT_FOUND -> sendError(exchange, 404, "Эпик подзадачи не найден");
+        }
+    }
+
+    private Task find(TaskManager manager, int id) {
+        return switch (type) {
+            case TASK -> manager.getTaskById(id);
+            case EPIC -> manager.getEpicById(id);
+            case SUBTASK -> manager.getSubtaskById(id);
+        };
+    }
+
+    private void clear(TaskManager manager) {
+        switch (type) {
+            case TASK -> manager.clearTasks();
+            case EPIC -> manager.clearEpics();
+            case SUBTASK -> manager.clearSubtasks();
+        }
+    }
+
+    // deleteAll ищет задачу по id и типу элемента, остальные поля не нужны
+    private Task stub(int id) {
+        return switch (type) {
+            case TASK -> new Task(id, "", "");
+            case EPIC -> new Epic(id, "", "");
+            case SUBTASK -> new Subtask(id, "", "", null, 0, null, null);
+        };
+    }
+
+    private String notFound(int id) {
+        return switch (type) {
+            case TASK -> "Задача с id " + id + " не найдена";
+            case EPIC -> "Эпик с id " + id + " не найден";
+            case SUBTASK -> "Подзадача с id " + id + " не найдена";
+        };
+    }
+}
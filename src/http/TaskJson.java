@@ -0,0 +1,374 @@
+package http;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// JSON-представление задач для HttpTaskServer: duration - число минут, startTime и endTime - ISO-8601.
+// Разбор понимает весь синтаксис JSON, но из объекта задачи берёт только известные поля.
+public final class TaskJson {
+    private TaskJson() {
+    }
+
+    public static String toJson(Task task) {
+        StringBuilder json = new StringBuilder();
+        try {
+            write(task, json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return json.toString();
+    }
+
+    public static void write(Task task, Appendable out) throws IOException {
+        out.append("{\"id\":").append(String.valueOf(task.getId()));
+        out.append(",\"type\":\"").append(task.getType().name()).append('"');
+        out.append(",\"name\":");
+        writeString(task.getName(), out);
+        out.append(",\"description\":");
+        writeString(task.getDescription(), out);
+        out.append(",\"status\":\"").append(task.getStatus().name()).append('"');
+        out.append(",\"duration\":").append(task.getDuration() == null ? "null" : String.valueOf(task.getDuration().toMinutes()));
+        out.append(",\"startTime\":");
+        writeString(task.getStartTime() == null ? null : task.getStartTime().toString(), out);
+        out.append(",\"endTime\":");
+        writeString(task.getEndTime() == null ? null : task.getEndTime().toString(), out);
+        if (task instanceof Subtask) {
+            out.append(",\"epicId\":").append(String.valueOf(((Subtask) task).getEpicId()));
+        }
+        out.append('}');
+    }
+
+    // Задача указанного типа из JSON-объекта. id 0 или его отсутствие означает новую задачу.
+    public static Task fromJson(String json, TaskType type) {
+        Object value = parse(json);
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Ожидался JSON-объект задачи");
+        }
+        return toTask((Map<?, ?>) value, type);
+    }
+
+    public static List<Task> listFromJson(String json, TaskType type) {
+        Object value = parse(json);
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Ожидался JSON-массив задач");
+        }
+        List<Task> result = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            if (!(item instanceof Map)) {
+                throw new IllegalArgumentException("Ожидался JSON-объект задачи");
+            }
+            Map<?, ?> fields = (Map<?, ?>) item;
+            TaskType itemType = fields.get("type") instanceof String ? TaskType.valueOf((String) fields.get("type")) : type;
+            result.add(toTask(fields, itemType));
+        }
+        return result;
+    }
+
+    private static Task toTask(Map<?, ?> fields, TaskType type) {
+        int id = intNumber(fields, "id");
+        String name = string(fields, "name");
+        if (name == null) {
+            throw new IllegalArgumentException("У задачи должно быть поле name");
+        }
+        String description = string(fields, "description");
+        String statusValue = string(fields, "status");
+        Status status = statusValue == null ? Status.NEW : Status.valueOf(statusValue);
+        String start = string(fields, "startTime");
+        LocalDateTime startTime = start == null ? null : LocalDateTime.parse(start);
+        Duration duration = fields.get("duration") == null ? null : duration(number(fields, "duration", 0), startTime);
+        if (type == TaskType.EPIC) {
+            return id == 0 ? new Epic(name, description) : new Epic(id, name, description);
+        }
+        if (type == TaskType.SUBTASK) {
+            if (fields.get("epicId") == null) {
+                throw new IllegalArgumentException("У подзадачи должно быть поле epicId");
+            }
+            int epicId = intNumber(fields, "epicId");
+            return id == 0 ? new Subtask(name, description, status, epicId, duration, startTime)
+                    : new Subtask(id, name, description, status, epicId, duration, startTime);
+        }
+        return id == 0 ? new Task(name, description, status, duration, startTime)
+                : new Task(id, name, description, status, duration, startTime);
+    }
+
+    private static String string(Map<?, ?> fields, String key) {
+        Object value = fields.get(key);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException("Поле " + key + " должно быть строкой");
+        }
+        return (String) value;
+    }
+
+    private static long number(Map<?, ?> fields, String key, long defaultValue) {
+        Object value = fields.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Long)) {
+            throw new IllegalArgumentException("Поле " + key + " должно быть целым числом");
+        }
+        return (Long) value;
+    }
+
+    // Двоичный снимок хранит длительность как int минут, а время окончания должно оставаться
+    // в пределах LocalDateTime: иначе запрос упал бы позже, при сохранении или в getEndTime().
+    private static Duration duration(long minutes, LocalDateTime startTime) {
+        if (minutes < 0 || minutes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Длительность должна быть от 0 до " + Integer.MAX_VALUE + " минут: " + minutes);
+        }
+        Duration duration = Duration.ofMinutes(minutes);
+        if (startTime != null) {
+            try {
+                startTime.plus(duration);
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Время окончания задачи вне допустимого диапазона", e);
+            }
+        }
+        return duration;
+    }
+
+    // id вне диапазона int - ошибка запроса, а не отбрасывание старших разрядов и чужая задача
+    private static int intNumber(Map<?, ?> fields, String key) {
+        long value = number(fields, key, 0);
+        try {
+            return Math.toIntExact(value);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Поле " + key + " вне допустимого диапазона: " + value, e);
+        }
+    }
+
+    static String quote(String value) {
+        StringBuilder json = new StringBuilder();
+        try {
+            writeString(value, json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return json.toString();
+    }
+
+    private static void writeString(String value, Appendable out) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    // Объекты разбираются в Map, массивы в List, целые числа в Long, дробные в Double.
+    static Object parse(String json) {
+        Parser parser = new Parser(json);
+        Object value = parser.value();
+        parser.skipWhitespace();
+        if (parser.position != json.length()) {
+            throw parser.error("лишние символы после значения");
+        }
+        return value;
+    }
+
+    private static final class Parser {
+        // задача - объект в массиве, так что глубины 64 хватает с запасом, а стек обработчика не переполнится
+        private static final int MAX_DEPTH = 64;
+
+        private final String json;
+        private int position;
+        private int depth;
+
+        Parser(String json) {
+            this.json = json;
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw error("неожиданный конец");
+            }
+            char c = json.charAt(position);
+            return switch (c) {
+                case '{', '[' -> nested(c);
+                case '"' -> string();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> number();
+            };
+        }
+
+        private Object nested(char c) {
+            if (++depth > MAX_DEPTH) {
+                throw error("вложенность больше " + MAX_DEPTH);
+            }
+            Object result = c == '{' ? object() : array();
+            depth--;
+            return result;
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return result;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("ожидалось имя поля");
+                }
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                result.put(key, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return result;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> result = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return result;
+            }
+            while (true) {
+                result.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return result;
+                }
+            }
+        }
+
+        private String string() {
+            StringBuilder result = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= json.length()) {
+                    throw error("незакрытая строка");
+                }
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return result.toString();
+                }
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    throw error("незакрытая строка");
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> result.append(escaped);
+                    case 'b' -> result.append('\b');
+                    case 'f' -> result.append('\f');
+                    case 'n' -> result.append('\n');
+                    case 'r' -> result.append('\r');
+                    case 't' -> result.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > json.length()) {
+                            throw error("неполная escape-последовательность");
+                        }
+                        try {
+                            result.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("неверная escape-последовательность");
+                        }
+                        position += 4;
+                    }
+                    default -> throw error("неверная escape-последовательность");
+                }
+            }
+        }
+
+        private Object number() {
+            int start = position;
+            while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) {
+                position++;
+            }
+            String text = json.substring(start, position);
+            try {
+                if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+                    return Double.parseDouble(text);
+                }
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("неверное значение");
+            }
+        }
+
+        private Object literal(String text, Object value) {
+            if (!json.startsWith(text, position)) {
+                throw error("неверное значение");
+            }
+            position += text.length();
+            return value;
+        }
+
+        private char peek() {
+            if (position >= json.length()) {
+                throw error("неожиданный конец");
+            }
+            return json.charAt(position);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("ожидался символ '" + c + "'");
+            }
+            position++;
+        }
+
+        void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Ошибка разбора JSON в позиции " + position + ": " + message);
+        }
+    }
+}
@@ -2,12 +2,26 @@ package model;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
 
 public class Epic extends Task {
-    private List<Subtask> subtasks = new ArrayList<>();
+    // подзадачи по id в порядке добавления: замена и удаление подзадачи не ищут её обходом списка
+    private final LinkedHashMap<Integer, Subtask> subtasks = new LinkedHashMap<>();
+    // неизменяемый список для getSubtasks(), собирается при первом обращении после изменения; null - устарел
+    private List<Subtask> subtaskList = List.of();
+    // ещё не сохранённые подзадачи (id 0) получают отрицательные ключи, чтобы не затирать друг друга
+    private int unsavedKey;
     private LocalDateTime endTime;
 
+    // агрегаты по подзадачам обновляются при каждом изменении, а не пересчитываются обходом списка
+    private int newCount;
+    private int doneCount;
+    private Duration totalDuration = Duration.ZERO;
+    private final TreeMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+    private final TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+
     public Epic(String name, String description) {
         super(name, description);
         this.status = Status.NEW;
@@ -22,59 +36,136 @@ public class Epic extends Task {
         this.status = Status.NEW;
     }
 
+    // Копия со своим списком подзадач и агрегатами; сами подзадачи общие с оригиналом.
+    public Epic(Epic other) {
+        super(other.id, other.name, other.description);
+        this.lazyDescription = other.lazyDescription;
+        this.status = other.status;
+        this.duration = other.duration;
+        this.startTime = other.startTime;
+        this.endTime = other.endTime;
+        this.subtasks.putAll(other.subtasks);
+        this.subtaskList = other.subtaskList;
+        this.unsavedKey = other.unsavedKey;
+        this.newCount = other.newCount;
+        this.doneCount = other.doneCount;
+        this.totalDuration = other.totalDuration;
+        this.startTimes.putAll(other.startTimes);
+        this.endTimes.putAll(other.endTimes);
+    }
+
+    // Список только для чтения: изменения эпика в уже полученном списке не видны.
     public List<Subtask> getSubtasks() {
-        return subtasks;
+        List<Subtask> list = subtaskList;
+        if (list == null) {
+            // List.copyOf хранит элементы в final-поле, поэтому список можно отдавать другим потокам
+            list = List.copyOf(subtasks.values());
+            subtaskList = list;
+        }
+        return list;
     }
 
     public void setSubtasks(List<Subtask> subtasks) {
-        this.subtasks = subtasks;
-        updateStatus();
-        updateTimeFields();
+        this.subtasks.clear();
+        for (Subtask subtask : subtasks) {
+            this.subtasks.put(keyOf(subtask), subtask);
+        }
+        subtaskList = null;
+        newCount = 0;
+        doneCount = 0;
+        totalDuration = Duration.ZERO;
+        startTimes.clear();
+        endTimes.clear();
+        for (Subtask subtask : this.subtasks.values()) {
+            include(subtask);
+        }
+        refresh();
     }
 
+    // Подзадача с уже известным id заменяет прежнюю версию на её месте.
+    // Удалить или заменить можно только сохранённую подзадачу (с ненулевым id).
     public void addSubtask(Subtask subtask) {
-        subtasks.add(subtask);
-        updateStatus();
-        updateTimeFields();
+        Subtask previous = subtasks.put(keyOf(subtask), subtask);
+        if (previous != null) {
+            exclude(previous);
+        }
+        subtaskList = null;
+        include(subtask);
+        refresh();
     }
 
     public void removeSubtask(Subtask subtask) {
-        subtasks.remove(subtask);
-        updateStatus();
-        updateTimeFields();
+        Subtask removed = subtasks.remove(subtask.getId());
+        if (removed != null) {
+            subtaskList = null;
+            exclude(removed);
+            refresh();
+        }
     }
 
-    private void updateStatus() {
-        boolean allNew = true;
-        boolean allDone = true;
+    // Заменяет подзадачу с тем же id на новую версию, пересчитывая только её вклад в статус и время.
+    public boolean replaceSubtask(Subtask subtask) {
+        Subtask previous = subtasks.get(subtask.getId());
+        if (previous == null) {
+            return false;
+        }
+        subtasks.put(subtask.getId(), subtask);
+        subtaskList = null;
+        exclude(previous);
+        include(subtask);
+        refresh();
+        return true;
+    }
 
-        if (subtasks.isEmpty()) {
-            setStatus(Status.NEW);
-            return;
+    private int keyOf(Subtask subtask) {
+        return subtask.getId() != 0 ? subtask.getId() : --unsavedKey;
+    }
+
+    private void include(Subtask subtask) {
+        if (subtask.getStatus() == Status.NEW) {
+            newCount++;
+        } else if (subtask.getStatus() == Status.DONE) {
+            doneCount++;
+        }
+        if (subtask.getDuration() != null) {
+            totalDuration = totalDuration.plus(subtask.getDuration());
         }
+        if (subtask.getStartTime() != null) {
+            startTimes.merge(subtask.getStartTime(), 1, Integer::sum);
+        }
+        if (subtask.getEndTime() != null) {
+            endTimes.merge(subtask.getEndTime(), 1, Integer::sum);
+        }
+    }
 
-        for (Subtask subtask : subtasks) {
-            if (!subtask.getStatus().equals(Status.NEW)) {
-                allNew = false;
-            }
-            if (!subtask.getStatus().equals(Status.DONE)) {
-                allDone = false;
-            }
+    private void exclude(Subtask subtask) {
+        if (subtask.getStatus() == Status.NEW) {
+            newCount--;
+        } else if (subtask.getStatus() == Status.DONE) {
+            doneCount--;
+        }
+        if (subtask.getDuration() != null) {
+            totalDuration = totalDuration.minus(subtask.getDuration());
+        }
+        if (subtask.getStartTime() != null) {
+            startTimes.computeIfPresent(subtask.getStartTime(), (time, count) -> count > 1 ? count - 1 : null);
+        }
+        if (subtask.getEndTime() != null) {
+            endTimes.computeIfPresent(subtask.getEndTime(), (time, count) -> count > 1 ? count - 1 : null);
         }
+    }
 
-        if (!allDone && !allNew) {
-            setStatus(Status.IN_PROGRESS);
-        } else if (allNew) {
+    private void refresh() {
+        if (subtasks.isEmpty() || newCount == subtasks.size()) {
             setStatus(Status.NEW);
-        } else {
+        } else if (doneCount == subtasks.size()) {
             setStatus(Status.DONE);
+        } else {
+            setStatus(Status.IN_PROGRESS);
         }
-    }
-
-    private void updateTimeFields() {
-        duration = subtasks.stream().map(Subtask::getDuration).filter(Objects::nonNull).reduce(Duration.ZERO, Duration::plus);
-        startTime = subtasks.stream().map(Subtask::getStartTime).filter(Objects::nonNull).min(LocalDateTime::compareTo).orElse(null);
-        endTime = subtasks.stream().map(Subtask::getEndTime).filter(Objects::nonNull).max(LocalDateTime::compareTo).orElse(null);
+        duration = totalDuration;
+        startTime = startTimes.isEmpty() ? null : startTimes.firstKey();
+        endTime = endTimes.isEmpty() ? null : endTimes.lastKey();
     }
 
     @Override
@@ -92,7 +183,7 @@ public class Epic extends Task {
         return "Epic:" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", desc='" + description + '\'' +
+                ", desc='" + getDescription() + '\'' +
                 ", status='" + status + '\'' +
                 "\n";
     }
@@ -30,7 +30,7 @@ public class Subtask extends Task {
         return "Subtask:" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", desc='" + description + '\'' +
+                ", desc='" + getDescription() + '\'' +
                 ", status='" + status + '\'' +
                 "\n";
     }
@@ -3,6 +3,7 @@ package model;
 import java.util.Objects;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.function.Supplier;
 
 public class Task {
     protected String name;
@@ -11,6 +12,8 @@ public class Task {
     protected Status status;
     protected Duration duration;
     protected LocalDateTime startTime;
+    // описание, оставленное в файле: читается при каждом обращении и в задаче не хранится
+    protected Supplier<String> lazyDescription;
 
     public Task(String name, String description, Status status, Duration duration, LocalDateTime startTime) {
         this.name = name;
@@ -57,7 +60,17 @@ public class Task {
     }
 
     public String getDescription() {
-        return description;
+        return lazyDescription != null ? lazyDescription.get() : description;
+    }
+
+    // null, если описание хранится в задаче
+    public Supplier<String> getLazyDescription() {
+        return lazyDescription;
+    }
+
+    public void setLazyDescription(Supplier<String> lazyDescription) {
+        this.lazyDescription = lazyDescription;
+        this.description = null;
     }
 
     public TaskType getType() {
@@ -94,7 +107,7 @@ public class Task {
         return "Task:" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", desc='" + description + '\'' +
+                ", desc='" + getDescription() + '\'' +
                 ", status='" + status + '\'' +
                 ", duration='" + duration + '\'' +
                 ", startTime='" + startTime + '\'' +
@@ -0,0 +1,13 @@
+package service;
+
+// Результат обработки одного элемента в addAll, updateAll и deleteAll.
+public enum BatchOutcome {
+    // элемент добавлен, обновлён или удалён
+    APPLIED,
+    // пересекается по времени с сохранённой задачей или с другим элементом пакета
+    OVERLAPPING,
+    // задачи с таким id нет
+    NOT_FOUND,
+    // эпик, указанный в подзадаче, не существует
+    EPIC_NOT_FOUND
+}
@@ -0,0 +1,326 @@
+package service;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Пакетные addAll/updateAll/deleteAll, общие для InMemoryTaskManager и ConcurrentTaskManager.
+// Каждая операция идёт в две фазы: сначала карты задач и расписание (add, update, delete),
+// затем пересчёт затронутых эпиков (addToEpics, updateEpics, deleteFromEpics).
+// Менеджер сам решает, под какими блокировками идёт каждая фаза; доступ к хранилищу - через Store.
+//
+// Проверка пакета на пересечения - «сортировкой и проходом».
+// Кандидаты сортируются по startTime один раз; принятые задачи пакета не пересекаются между собой,
+// поэтому конфликт внутри пакета виден по самому позднему концу среди уже принятых.
+// Пересечение с сохранёнными задачами проверяется переданным предикатом (запросом к расписанию).
+// Из двух пересекающихся задач пакета остаётся та, что начинается раньше.
+final class BatchSweep {
+    // Хранилище менеджера. Методы вызываются под блокировками, которые менеджер держит на время фазы.
+    interface Store {
+        // сохранённая задача того же типа и с тем же id
+        Task findStored(Task task);
+
+        boolean hasEpic(int epicId);
+
+        // false - пакет не держит блокировку эпика, и его подзадачи трогать нельзя
+        boolean isEpicGuarded(int epicId);
+
+        int nextId();
+
+        // кладёт задачу в карту её типа, возвращает прежнюю версию
+        Task put(Task task);
+
+        // удаляет задачу из карты её типа
+        Task remove(Task task);
+
+        Epic getEpic(int epicId);
+
+        // эпик, который можно пересчитать на месте
+        Epic epicForUpdate(int epicId);
+
+        // пересекается ли задача с сохранёнными
+        boolean overlaps(Task task);
+
+        void addToSchedule(List<Task> timed);
+
+        void addToSchedule(Task task);
+
+        void removeFromSchedule(Task task);
+
+        void index(Task task);
+
+        void reindexStatus(Task task);
+
+        void unindex(int id);
+
+        TaskEvents events();
+    }
+
+    private final List<? extends Task> items;
+    private final Store store;
+    private final BatchOutcome[] outcomes;
+    private final Set<Integer> affectedEpics = new HashSet<>();
+    // добавленные или перенесённые подзадачи по id эпика
+    private final Map<Integer, List<Subtask>> subtasksByEpic = new HashMap<>();
+    private final List<Integer> forgotten = new ArrayList<>();
+    private Task[] stored;
+
+    BatchSweep(List<? extends Task> items, Store store) {
+        this.items = items;
+        this.store = store;
+        this.outcomes = new BatchOutcome[items.size()];
+    }
+
+    List<BatchOutcome> outcomes() {
+        return Arrays.asList(outcomes);
+    }
+
+    // id, которые нужно убрать из истории просмотров после deleteAll
+    List<Integer> forgotten() {
+        return forgotten;
+    }
+
+    // Подзадача может ссылаться только на эпик, существовавший до вызова: id новых эпиков выдаются при применении пакета.
+    void add() {
+        for (int i = 0; i < items.size(); i++) {
+            Task item = items.get(i);
+            if (item instanceof Subtask && !store.hasEpic(((Subtask) item).getEpicId())) {
+                outcomes[i] = BatchOutcome.EPIC_NOT_FOUND;
+            }
+        }
+        checkOverlaps(items, outcomes, store::overlaps);
+
+        List<Task> timed = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (outcomes[i] != null) {
+                continue;
+            }
+            outcomes[i] = BatchOutcome.APPLIED;
+            Task item = items.get(i);
+            item.setId(store.nextId());
+            store.put(item);
+            store.index(item);
+            if (item instanceof Epic) {
+                continue;
+            }
+            if (item instanceof Subtask) {
+                Subtask subtask = (Subtask) item;
+                subtasksByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
+            }
+            if (item.getStartTime() != null) {
+                timed.add(item);
+            }
+        }
+        store.addToSchedule(timed);
+        for (int i = 0; i < items.size(); i++) {
+            if (outcomes[i] == BatchOutcome.APPLIED) {
+                store.events().added(items.get(i));
+            }
+        }
+    }
+
+    void addToEpics() {
+        subtasksByEpic.forEach((epicId, added) -> {
+            Epic epic = store.epicForUpdate(epicId);
+            TaskEvents.EpicState before = store.events().epicState(epic);
+            List<Subtask> merged = new ArrayList<>(epic.getSubtasks().size() + added.size());
+            merged.addAll(epic.getSubtasks());
+            merged.addAll(added);
+            epic.setSubtasks(merged);
+            store.reindexStatus(epic);
+            store.events().epicRecomputed(epic, before);
+        });
+    }
+
+    void update() {
+        stored = new Task[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Task item = items.get(i);
+            stored[i] = store.findStored(item);
+            if (stored[i] == null) {
+                outcomes[i] = BatchOutcome.NOT_FOUND;
+            } else if (item instanceof Subtask && !store.hasEpic(((Subtask) item).getEpicId())) {
+                outcomes[i] = BatchOutcome.EPIC_NOT_FOUND;
+            } else if (item instanceof Subtask && !store.isEpicGuarded(((Subtask) stored[i]).getEpicId())) {
+                // подзадачу перенесли в другой эпик после того, как были взяты блокировки
+                outcomes[i] = BatchOutcome.NOT_FOUND;
+            } else if (!(item instanceof Epic)) {
+                // старая версия не должна считаться пересечением для новой
+                store.removeFromSchedule(stored[i]);
+            }
+        }
+        checkOverlaps(items, outcomes, store::overlaps);
+
+        for (int i = 0; i < items.size(); i++) {
+            Task item = items.get(i);
+            if (outcomes[i] != null) {
+                if (outcomes[i] == BatchOutcome.OVERLAPPING) {
+                    store.addToSchedule(stored[i]);
+                }
+                continue;
+            }
+            outcomes[i] = BatchOutcome.APPLIED;
+            if (item instanceof Epic) {
+                continue;
+            }
+            if (item instanceof Subtask) {
+                Subtask subtask = (Subtask) item;
+                int oldEpicId = ((Subtask) stored[i]).getEpicId();
+                affectedEpics.add(oldEpicId);
+                affectedEpics.add(subtask.getEpicId());
+                if (oldEpicId != subtask.getEpicId()) {
+                    subtasksByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
+                }
+            }
+            store.removeFromSchedule(store.put(item));
+            store.addToSchedule(item);
+            store.index(item);
+            store.events().updated(item);
+        }
+    }
+
+    void updateEpics() {
+        // эпик может быть заменён в этом же пакете, поэтому прежнее состояние запоминается до замены
+        TaskEvents events = store.events();
+        Map<Integer, TaskEvents.EpicState> epicsBefore = new HashMap<>();
+        if (events.isActive()) {
+            affectedEpics.forEach(epicId -> epicsBefore.put(epicId, events.epicState(store.getEpic(epicId))));
+        }
+
+        // список подзадач эпика, заменённого в этом же пакете, переносится без пересчёта - пересчёт будет ниже
+        Map<Integer, List<Subtask>> carriedSubtasks = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (outcomes[i] == BatchOutcome.APPLIED && items.get(i) instanceof Epic) {
+                Epic epic = (Epic) items.get(i);
+                List<Subtask> epicSubtasks = store.getEpic(epic.getId()).getSubtasks();
+                if (affectedEpics.contains(epic.getId())) {
+                    carriedSubtasks.put(epic.getId(), epicSubtasks);
+                } else {
+                    epic.setSubtasks(epicSubtasks);
+                }
+                store.put(epic);
+                store.index(epic);
+                events.updated(epic);
+            }
+        }
+
+        for (int epicId : affectedEpics) {
+            Epic epic = store.epicForUpdate(epicId);
+            if (epic == null) {
+                continue;
+            }
+            LinkedHashMap<Integer, Subtask> rebuilt = new LinkedHashMap<>();
+            for (Subtask subtask : carriedSubtasks.getOrDefault(epicId, epic.getSubtasks())) {
+                Subtask current = (Subtask) store.findStored(subtask);
+                if (current != null && current.getEpicId() == epicId) {
+                    rebuilt.put(current.getId(), current);
+                }
+            }
+            for (Subtask subtask : subtasksByEpic.getOrDefault(epicId, List.of())) {
+                Subtask current = (Subtask) store.findStored(subtask);
+                if (current != null && current.getEpicId() == epicId) {
+                    rebuilt.putIfAbsent(current.getId(), current);
+                }
+            }
+            epic.setSubtasks(new ArrayList<>(rebuilt.values()));
+            store.reindexStatus(epic);
+            events.epicRecomputed(epic, epicsBefore.get(epicId));
+        }
+    }
+
+    void delete() {
+        for (int i = 0; i < items.size(); i++) {
+            Task item = items.get(i);
+            Task removed;
+            if (item instanceof Epic) {
+                Epic epic = (Epic) store.remove(item);
+                removed = epic;
+                if (epic != null) {
+                    for (Subtask subtask : epic.getSubtasks()) {
+                        Task removedSubtask = store.remove(subtask);
+                        if (removedSubtask != null) {
+                            store.removeFromSchedule(removedSubtask);
+                            store.unindex(removedSubtask.getId());
+                            store.events().deleted(TaskType.SUBTASK, removedSubtask.getId());
+                        }
+                        forgotten.add(subtask.getId());
+                    }
+                }
+            } else if (item instanceof Subtask) {
+                Subtask subtask = (Subtask) store.findStored(item);
+                // эпик подзадачи мог смениться после того, как были взяты блокировки
+                removed = subtask != null && store.isEpicGuarded(subtask.getEpicId()) ? store.remove(item) : null;
+                if (removed != null) {
+                    affectedEpics.add(subtask.getEpicId());
+                    store.removeFromSchedule(removed);
+                }
+            } else {
+                removed = store.remove(item);
+                if (removed != null) {
+                    store.removeFromSchedule(removed);
+                }
+            }
+            forgotten.add(item.getId());
+            if (removed != null) {
+                store.unindex(removed.getId());
+                store.events().deleted(removed.getType(), removed.getId());
+            }
+            outcomes[i] = removed != null ? BatchOutcome.APPLIED : BatchOutcome.NOT_FOUND;
+        }
+    }
+
+    void deleteFromEpics() {
+        for (int epicId : affectedEpics) {
+            Epic epic = store.epicForUpdate(epicId);
+            if (epic != null) {
+                TaskEvents.EpicState before = store.events().epicState(epic);
+                List<Subtask> remaining = new ArrayList<>(epic.getSubtasks().size());
+                for (Subtask subtask : epic.getSubtasks()) {
+                    if (store.findStored(subtask) != null) {
+                        remaining.add(subtask);
+                    }
+                }
+                epic.setSubtasks(remaining);
+                store.reindexStatus(epic);
+                store.events().epicRecomputed(epic, before);
+            }
+        }
+    }
+
+    // Помечает OVERLAPPING отклонённые элементы; элементы, у которых исход уже задан, не рассматриваются.
+    static void checkOverlaps(List<? extends Task> items, BatchOutcome[] outcomes, Predicate<Task> overlapsStored) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Task item = items.get(i);
+            if (outcomes[i] == null && !(item instanceof Epic)
+                    && item.getStartTime() != null && item.getEndTime() != null) {
+                candidates.add(i);
+            }
+        }
+        candidates.sort(Comparator.<Integer, LocalDateTime>comparing(i -> items.get(i).getStartTime())
+                .thenComparingInt(i -> i));
+
+        LocalDateTime acceptedEnd = null;
+        for (int i : candidates) {
+            Task item = items.get(i);
+            if (acceptedEnd != null && item.getStartTime().isBefore(acceptedEnd) || overlapsStored.test(item)) {
+                outcomes[i] = BatchOutcome.OVERLAPPING;
+            } else if (acceptedEnd == null || item.getEndTime().isAfter(acceptedEnd)) {
+                acceptedEnd = item.getEndTime();
+            }
+        }
+    }
+}
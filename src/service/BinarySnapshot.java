@@ -0,0 +1,250 @@
+package service;
+
+import model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+// Двоичный формат снимка:
+//   заголовок:      magic (4 байта "KNBN"), версия (int)
+//   таблица строк:  количество (int), затем для каждой строки длина в байтах (int) и байты UTF-8
+//   записи:         количество (int), затем записи фиксированной длины RECORD_SIZE:
+//                   id (int), тип (byte), статус (byte), имя (int), описание (int),
+//                   длительность в минутах (int), начало в секундах от эпохи UTC (long),
+//                   наносекунды начала (int), id эпика (int)
+// Версия 1 отличается только отсутствием наносекунд начала; такие снимки по-прежнему читаются.
+// Ссылки на строки - номера в таблице строк, одинаковые строки хранятся один раз.
+public class BinarySnapshot {
+    public static final int MAGIC = 0x4B4E424E;
+    public static final int VERSION = 2;
+    static final int RECORD_SIZE = 4 + 1 + 1 + 4 + 4 + 4 + 8 + 4 + 4;
+
+    private static final int NO_VALUE = -1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private BinarySnapshot() {
+    }
+
+    public static boolean isBinary(Path path) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            return channel.read(header, 0) == 4 && header.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения файла.", e);
+        }
+    }
+
+    public static byte[] write(Collection<? extends Task> tasks) {
+        return write(tasks, null).bytes;
+    }
+
+    // Снимок и положение в нём строк LazyTextStore: номер строки хранилища -> смещение байтов,
+    // -1 для строк, которые в снимок не вошли.
+    static final class Image {
+        final byte[] bytes;
+        final long[] textOffsets;
+
+        Image(byte[] bytes, long[] textOffsets) {
+            this.bytes = bytes;
+            this.textOffsets = textOffsets;
+        }
+    }
+
+    // Из texts в новый снимок переходят только строки, на которые ссылаются описания задач, и переходят
+    // байтами из файла, без чтения в строки; после texts.rewrite() остальные строки из файла уходят.
+    static Image write(Collection<? extends Task> tasks, LazyTextStore texts) {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        String[] descriptions = new String[tasks.size()];
+        // номер строки texts для ленивого описания задачи, иначе NO_VALUE
+        int[] textIds = new int[tasks.size()];
+        boolean[] carried = texts == null ? null : new boolean[texts.size()];
+        int carriedCount = 0;
+        int i = 0;
+        for (Task task : tasks) {
+            intern(task.getName(), stringIds, strings);
+            int textId = texts == null ? NO_VALUE : texts.textIdOf(task.getLazyDescription());
+            textIds[i] = textId;
+            if (textId == NO_VALUE) {
+                descriptions[i] = task.getDescription();
+                intern(descriptions[i], stringIds, strings);
+            } else if (!carried[textId]) {
+                carried[textId] = true;
+                carriedCount++;
+            }
+            i++;
+        }
+        // перенесённые строки идут в таблице после остальных, по возрастанию номера в texts
+        int[] carriedIds = new int[carriedCount];
+        int[] carriedIndex = carried == null ? null : new int[carried.length];
+        for (int textId = 0, k = 0; carried != null && textId < carried.length; textId++) {
+            if (carried[textId]) {
+                carriedIds[k] = textId;
+                carriedIndex[textId] = strings.size() + k++;
+            }
+        }
+
+        long[] textOffsets = null;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + tasks.size() * (RECORD_SIZE + 16));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(strings.size() + carriedCount);
+            for (String value : strings) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            if (texts != null) {
+                textOffsets = new long[carried.length];
+                Arrays.fill(textOffsets, -1);
+                texts.copyTo(carriedIds, out, textOffsets);
+            }
+            out.writeInt(tasks.size());
+            i = 0;
+            for (Task task : tasks) {
+                String description = descriptions[i];
+                int textId = textIds[i++];
+                out.writeInt(task.getId());
+                out.writeByte(task.getType().ordinal());
+                out.writeByte(task.getStatus() == null ? NO_VALUE : task.getStatus().ordinal());
+                out.writeInt(task.getName() == null ? NO_VALUE : stringIds.get(task.getName()));
+                out.writeInt(textId != NO_VALUE ? carriedIndex[textId] : description == null ? NO_VALUE : stringIds.get(description));
+                out.writeInt(task.getDuration() == null ? NO_VALUE : Math.toIntExact(task.getDuration().toMinutes()));
+                out.writeLong(task.getStartTime() == null ? NO_TIME : task.getStartTime().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(task.getStartTime() == null ? 0 : task.getStartTime().getNano());
+                out.writeInt(task instanceof Subtask ? ((Subtask) task).getEpicId() : NO_VALUE);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время записи снимка.", e);
+        }
+        return new Image(bytes.toByteArray(), textOffsets);
+    }
+
+    // Файл отображается в память целиком, записи разбираются прямо из отображения без построчного чтения.
+    public static List<Task> read(Path path) {
+        return read(path, null);
+    }
+
+    // Если задан texts, описания остаются в файле: задача получает ссылку на строку таблицы,
+    // а все строки держатся в памяти только до texts.preload(null) после загрузки.
+    static List<Task> read(Path path, LazyTextStore texts) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, texts);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения файла.", e);
+        }
+    }
+
+    static List<Task> read(ByteBuffer buffer) {
+        return read(buffer, null);
+    }
+
+    static List<Task> read(ByteBuffer buffer, LazyTextStore texts) {
+        try {
+            int version = readVersion(buffer);
+            String[] strings = readStrings(buffer, texts);
+            int count = buffer.getInt();
+            List<Task> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = buffer.getInt();
+                TaskType type = TYPES[buffer.get()];
+                byte statusOrdinal = buffer.get();
+                int nameRef = buffer.getInt();
+                int descriptionRef = buffer.getInt();
+                int durationMinutes = buffer.getInt();
+                long startSeconds = buffer.getLong();
+                int startNanos = version == 1 ? 0 : buffer.getInt();
+                int epicId = buffer.getInt();
+
+                Status status = statusOrdinal == NO_VALUE ? null : STATUSES[statusOrdinal];
+                String name = nameRef == NO_VALUE ? null : strings[nameRef];
+                String description = descriptionRef == NO_VALUE || texts != null ? null : strings[descriptionRef];
+                Duration duration = durationMinutes == NO_VALUE ? null : Duration.ofMinutes(durationMinutes);
+                LocalDateTime startTime = startSeconds == NO_TIME ? null : LocalDateTime.ofEpochSecond(startSeconds, startNanos, ZoneOffset.UTC);
+                Task task;
+                if (type == TaskType.EPIC) {
+                    task = new Epic(id, name, description);
+                } else if (type == TaskType.SUBTASK) {
+                    task = new Subtask(id, name, description, status, epicId, duration, startTime);
+                } else {
+                    task = new Task(id, name, description, status, duration, startTime);
+                }
+                if (texts != null && descriptionRef != NO_VALUE) {
+                    task.setLazyDescription(texts.ref(descriptionRef));
+                }
+                result.add(task);
+            }
+            return result;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new ManagerSaveException("Двоичный снимок повреждён.", e);
+        }
+    }
+
+    private static int readVersion(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new ManagerSaveException("Файл не является двоичным снимком.", null);
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new ManagerSaveException("Неподдерживаемая версия снимка: " + version, null);
+        }
+        return version;
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, LazyTextStore texts) {
+        String[] strings = new String[buffer.getInt()];
+        long[] offsets = texts == null ? null : new long[strings.length];
+        int[] lengths = texts == null ? null : new int[strings.length];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = buffer.getInt();
+            if (texts != null) {
+                offsets[i] = buffer.position();
+                lengths[i] = length;
+            }
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+            buffer.get(scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        if (texts != null) {
+            texts.bind(offsets, lengths);
+            texts.preload(strings);
+        }
+        return strings;
+    }
+
+    private static int intern(String value, Map<String, Integer> stringIds, List<String> strings) {
+        if (value == null) {
+            return NO_VALUE;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,185 @@
+package service;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// История просмотров для параллельного чтения.
+// add() не берёт блокировку: просмотр записывается в кольцевой буфер полосы, выбранной по потоку.
+// Буферы разбираются пачками под drainLock - когда буфер наполнился, при remove() и при getHistory().
+// Порядок просмотров между потоками восстанавливается по общему номеру записи, и записи применяются
+// к истории строго по возрастанию номера. Номер берётся уже после того, как слот в буфере занят,
+// поэтому пропуск в номерах означает запись, которую поток вот-вот опубликует: записи за пропуском
+// откладываются, а если их больше MAX_HELD, разбор дожидается публикации.
+// remove() и getHistory() дожидаются разбора всех записей, номера которых выданы до их вызова.
+public class BufferedHistoryManager implements HistoryManager {
+    private static final int BUFFER_SIZE = 128;
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 4;
+    private static final int MAX_HELD = BUFFER_SIZE;
+
+    private final int maxSize;
+    private final Stripe[] stripes;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    // упорядоченная история, защищена drainLock; повторный просмотр переносит задачу в конец
+    private final LinkedHashMap<Integer, Task> history = new LinkedHashMap<>();
+    // защищены drainLock: записи с номером не больше drainedUpTo применены к истории,
+    // held - разобранные записи за пропуском в номерах, по возрастанию номера
+    private long drainedUpTo;
+    private final ArrayList<Record> held = new ArrayList<>();
+
+    private static final class Record {
+        final Task task;
+        final long sequence;
+
+        Record(Task task, long sequence) {
+            this.task = task;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Stripe {
+        final AtomicReferenceArray<Record> slots = new AtomicReferenceArray<>(BUFFER_SIZE);
+        final AtomicLong writeCounter = new AtomicLong();
+        volatile long readCounter;
+
+        boolean offer(Task task, AtomicLong sequence) {
+            while (true) {
+                long write = writeCounter.get();
+                if (write - readCounter >= BUFFER_SIZE) {
+                    return false;
+                }
+                if (writeCounter.compareAndSet(write, write + 1)) {
+                    // между выдачей номера и публикацией нет ожиданий, так что пропуск в номерах быстро закрывается
+                    slots.set((int) (write % BUFFER_SIZE), new Record(task, sequence.incrementAndGet()));
+                    return true;
+                }
+            }
+        }
+
+        long pending() {
+            return writeCounter.get() - readCounter;
+        }
+
+        // вызывается только под drainLock
+        void drainTo(List<Record> records) {
+            long read = readCounter;
+            long write = writeCounter.get();
+            while (read < write) {
+                int index = (int) (read % BUFFER_SIZE);
+                Record record = slots.get(index);
+                if (record == null) {
+                    // слот уже занят, но запись ещё не опубликована - разберём при следующем проходе
+                    break;
+                }
+                slots.set(index, null);
+                records.add(record);
+                read++;
+            }
+            readCounter = read;
+        }
+    }
+
+    public BufferedHistoryManager() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public BufferedHistoryManager(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        int stripeCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        Stripe stripe = stripes[(int) (Thread.currentThread().threadId() & (stripes.length - 1))];
+        while (!stripe.offer(task, sequence)) {
+            // буфер переполнен: дожидаемся разбора, просмотр не теряется
+            drainLock.lock();
+            try {
+                drainBuffers(0);
+            } finally {
+                drainLock.unlock();
+            }
+        }
+        if (stripe.pending() >= DRAIN_THRESHOLD && drainLock.tryLock()) {
+            try {
+                drainBuffers(0);
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        drainLock.lock();
+        try {
+            // просмотры, начатые до удаления, не должны вернуть задачу в историю
+            drainBuffers(sequence.get());
+            history.remove(id);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        drainLock.lock();
+        try {
+            drainBuffers(sequence.get());
+            return new ArrayList<>(history.values());
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // Применяет разобранные записи по порядку номеров, пока все записи до upTo не будут применены
+    // и за пропуском не останется больше MAX_HELD записей. Вызывается только под drainLock.
+    private void drainBuffers(long upTo) {
+        while (true) {
+            int before = held.size();
+            for (Stripe stripe : stripes) {
+                stripe.drainTo(held);
+            }
+            if (held.size() != before) {
+                held.sort((r1, r2) -> Long.compare(r1.sequence, r2.sequence));
+                int applied = 0;
+                while (applied < held.size() && held.get(applied).sequence == drainedUpTo + 1) {
+                    Record record = held.get(applied++);
+                    history.remove(record.task.getId());
+                    history.put(record.task.getId(), record.task);
+                    drainedUpTo = record.sequence;
+                }
+                held.subList(0, applied).clear();
+                Iterator<Task> oldest = history.values().iterator();
+                while (history.size() > maxSize) {
+                    oldest.next();
+                    oldest.remove();
+                }
+            }
+            if (drainedUpTo >= upTo && held.size() <= MAX_HELD) {
+                return;
+            }
+            // запись с пропущенным номером ещё публикуется другим потоком
+            Thread.yield();
+        }
+    }
+}
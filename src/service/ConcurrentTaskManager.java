@@ -0,0 +1,977 @@
+package service;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Потокобезопасный менеджер задач.
+// Чтение идёт без блокировок из ConcurrentHashMap и ConcurrentSkipListSet. Эпик пересчитывается на месте
+// под блокировкой своей полосы, поэтому наружу отдаются его копии, снятые под той же блокировкой.
+// Эпик и его подзадачи меняются под блокировкой полосы (stripe), выбранной по id эпика,
+// а проверка пересечений вместе с изменением расписания выполняется под scheduleLock.
+// Порядок захвата всегда один: сначала полоса эпика, затем scheduleLock.
+// Пакетные операции и обновление подзадачи (её прежний и новый эпик) берут все нужные полосы
+// по возрастанию номера, затем scheduleLock.
+public class ConcurrentTaskManager implements TaskManager {
+    private static final int STRIPES = 64;
+
+    // InstrumentedTaskManager подменяет историю обёрткой сразу после создания менеджера
+    volatile HistoryManager history = Managers.getConcurrentHistory();
+    private final AtomicInteger currentId = new AtomicInteger(1);
+    private final ConcurrentHashMap<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Epic> epics = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Subtask> subtasks = new ConcurrentHashMap<>();
+
+    private final ReentrantLock[] epicLocks = new ReentrantLock[STRIPES];
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+    private final IntervalIndex schedule = new IntervalIndex();
+    private final ConcurrentSkipListSet<Task> prioritizedTasks = new ConcurrentSkipListSet<>(
+            Comparator.comparing(Task::getStartTime).thenComparingInt(Task::getId));
+    // индексы обновляются под той же блокировкой, что и запись в карту задачи; сами индексы защищены своими мониторами
+    private final StatusIndex statusIndex = new StatusIndex();
+    private final TextIndex textIndex = new TextIndex();
+    // события публикуются под теми же блокировками, что и изменение, поэтому для одной задачи идут по порядку
+    private final TaskEvents events = new TaskEvents();
+
+    public ConcurrentTaskManager() {
+        for (int i = 0; i < STRIPES; i++) {
+            epicLocks[i] = new ReentrantLock();
+        }
+    }
+
+    // Возвращает копию: открытые HashMap нельзя безопасно отдавать при параллельной записи.
+    @Override
+    public HashMap<Integer, Task> getTasks() {
+        return new HashMap<>(tasks);
+    }
+
+    @Override
+    public HashMap<Integer, Epic> getEpics() {
+        HashMap<Integer, Epic> result = new HashMap<>(Math.max(16, (int) (epics.size() / 0.75f) + 1));
+        epics.forEach((id, epic) -> result.put(id, copyOf(epic)));
+        return result;
+    }
+
+    @Override
+    public HashMap<Integer, Subtask> getSubtasks() {
+        return new HashMap<>(subtasks);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return history.getHistory();
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskEventListener listener) {
+        return events.subscribe(listener, TaskEvents.DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskEventListener listener, int capacity) {
+        return events.subscribe(listener, capacity);
+    }
+
+    // Очистка берёт все блокировки, под которыми меняется очищаемая карта, поэтому проходит целиком
+    // между другими изменениями и, как в остальных менеджерах, публикует одно событие CLEARED.
+    @Override
+    public void clearTasks() {
+        List<Integer> removed = new ArrayList<>();
+        scheduleLock.lock();
+        try {
+            for (Task task : tasks.values()) {
+                removeFromSchedule(task);
+                unindex(task.getId());
+                removed.add(task.getId());
+            }
+            tasks.clear();
+            events.cleared(TaskType.TASK);
+        } finally {
+            scheduleLock.unlock();
+        }
+        removed.forEach(this::forget);
+    }
+
+    @Override
+    public void clearEpics() {
+        List<Integer> removed = new ArrayList<>();
+        List<ReentrantLock> locks = lockAllStripes();
+        try {
+            scheduleLock.lock();
+            try {
+                for (Subtask subtask : subtasks.values()) {
+                    removeFromSchedule(subtask);
+                    unindex(subtask.getId());
+                    removed.add(subtask.getId());
+                }
+                subtasks.clear();
+                for (Epic epic : epics.values()) {
+                    unindex(epic.getId());
+                    removed.add(epic.getId());
+                }
+                epics.clear();
+                events.cleared(TaskType.EPIC);
+            } finally {
+                scheduleLock.unlock();
+            }
+        } finally {
+            unlockAll(locks);
+        }
+        removed.forEach(this::forget);
+    }
+
+    @Override
+    public void clearSubtasks() {
+        List<Integer> removed = new ArrayList<>();
+        List<ReentrantLock> locks = lockAllStripes();
+        try {
+            Map<Integer, TaskEvents.EpicState> before = new HashMap<>();
+            if (events.isActive()) {
+                epics.values().forEach(epic -> before.put(epic.getId(), events.epicState(epic)));
+            }
+            scheduleLock.lock();
+            try {
+                for (Subtask subtask : subtasks.values()) {
+                    removeFromSchedule(subtask);
+                    unindex(subtask.getId());
+                    removed.add(subtask.getId());
+                }
+                subtasks.clear();
+                events.cleared(TaskType.SUBTASK);
+            } finally {
+                scheduleLock.unlock();
+            }
+            for (Epic epic : epics.values()) {
+                if (!epic.getSubtasks().isEmpty()) {
+                    epic.setSubtasks(new ArrayList<>());
+                    reindexStatus(epic);
+                }
+                events.epicRecomputed(epic, before.get(epic.getId()));
+            }
+        } finally {
+            unlockAll(locks);
+        }
+        removed.forEach(this::forget);
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            System.out.println("Задачи с таким id не существует");
+            return null;
+        }
+        recordView(task);
+        return task;
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        Epic epic = epics.get(id);
+        if (epic == null) {
+            System.out.println("Эпика с таким id не существует");
+            return null;
+        }
+        Epic copy = copyOf(epic);
+        recordView(copy);
+        return copy;
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask == null) {
+            System.out.println("Подзадачи с таким id не существует");
+            return null;
+        }
+        recordView(subtask);
+        return subtask;
+    }
+
+    // Задача без времени тоже добавляется под scheduleLock: под ним же её удаляют, так что ADDED
+    // всегда публикуется раньше DELETED, даже если другой поток найдёт задачу сразу после put.
+    @Override
+    public void addTask(Task task) {
+        scheduleLock.lock();
+        try {
+            if (task.getStartTime() != null && schedule.hasOverlapping(task)) {
+                System.out.println("Задача пересекается по времени с другими задачами");
+                return;
+            }
+            task.setId(currentId.getAndIncrement());
+            tasks.put(task.getId(), task);
+            addToSchedule(task);
+            index(task);
+            events.added(task);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        epic.setId(currentId.getAndIncrement());
+        ReentrantLock epicLock = lockFor(epic.getId());
+        epicLock.lock();
+        try {
+            epics.put(epic.getId(), epic);
+            index(epic);
+            events.added(epic);
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        ReentrantLock epicLock = lockFor(subtask.getEpicId());
+        epicLock.lock();
+        try {
+            scheduleLock.lock();
+            try {
+                if (schedule.hasOverlapping(subtask)) {
+                    System.out.println("Задача пересекается по времени с другими задачами");
+                    return;
+                }
+                subtask.setId(currentId.getAndIncrement());
+                subtasks.put(subtask.getId(), subtask);
+                addToSchedule(subtask);
+                index(subtask);
+                events.added(subtask);
+            } finally {
+                scheduleLock.unlock();
+            }
+            Epic currentEpic = epics.get(subtask.getEpicId());
+            if (currentEpic != null) {
+                TaskEvents.EpicState before = events.epicState(currentEpic);
+                currentEpic.addSubtask(subtask);
+                reindexStatus(currentEpic);
+                events.epicRecomputed(currentEpic, before);
+            } else {
+                System.out.println("Эпик для подзадачи указан неверно или не существует.");
+            }
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        scheduleLock.lock();
+        try {
+            if (schedule.hasOverlapping(task)) {
+                System.out.println("Задача пересекается по времени с другими задачами");
+                return;
+            }
+            Task oldTask = tasks.put(task.getId(), task);
+            if (oldTask != null) {
+                removeFromSchedule(oldTask);
+            }
+            addToSchedule(task);
+            index(task);
+            events.updated(task);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        ReentrantLock epicLock = lockFor(epic.getId());
+        epicLock.lock();
+        try {
+            Epic oldEpic = epics.get(epic.getId());
+            if (oldEpic == null) {
+                return;
+            }
+            epic.setSubtasks(oldEpic.getSubtasks());
+            epics.put(epic.getId(), epic);
+            index(epic);
+            events.updated(epic);
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    // Берутся полосы и прежнего, и нового эпика подзадачи: иначе перенос между эпиками гонялся бы
+    // с удалением прежнего эпика или его подзадач.
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        while (true) {
+            Subtask stored = subtasks.get(subtask.getId());
+            // подзадача могла быть удалена вместе с эпиком в другом потоке, воскрешать её нельзя
+            if (stored == null) {
+                System.out.println("Подзадачи с таким id не существует");
+                return;
+            }
+            int oldEpicId = stored.getEpicId();
+            List<ReentrantLock> locks = lockStripes(oldEpicId, subtask.getEpicId());
+            try {
+                Subtask current = subtasks.get(subtask.getId());
+                if (current != null && current.getEpicId() != oldEpicId) {
+                    // подзадачу перенесли в другой эпик, пока брались блокировки
+                    continue;
+                }
+                if (current == null) {
+                    System.out.println("Подзадачи с таким id не существует");
+                    return;
+                }
+                Epic oldEpic = epics.get(oldEpicId);
+                Epic currentEpic = epics.get(subtask.getEpicId());
+                if (currentEpic == null) {
+                    System.out.println("Эпик для подзадачи указан неверно или не существует.");
+                    return;
+                }
+                scheduleLock.lock();
+                try {
+                    if (schedule.hasOverlapping(subtask)) {
+                        System.out.println("Задача пересекается по времени с другими задачами");
+                        return;
+                    }
+                    subtasks.put(subtask.getId(), subtask);
+                    removeFromSchedule(current);
+                    addToSchedule(subtask);
+                    index(subtask);
+                    events.updated(subtask);
+                } finally {
+                    scheduleLock.unlock();
+                }
+                if (oldEpic != currentEpic) {
+                    if (oldEpic != null) {
+                        TaskEvents.EpicState before = events.epicState(oldEpic);
+                        oldEpic.removeSubtask(current);
+                        reindexStatus(oldEpic);
+                        events.epicRecomputed(oldEpic, before);
+                    }
+                    TaskEvents.EpicState before = events.epicState(currentEpic);
+                    currentEpic.addSubtask(subtask);
+                    reindexStatus(currentEpic);
+                    events.epicRecomputed(currentEpic, before);
+                } else {
+                    TaskEvents.EpicState before = events.epicState(currentEpic);
+                    currentEpic.replaceSubtask(subtask);
+                    reindexStatus(currentEpic);
+                    events.epicRecomputed(currentEpic, before);
+                }
+                return;
+            } finally {
+                unlockAll(locks);
+            }
+        }
+    }
+
+    @Override
+    public void deleteTask(Task task) {
+        scheduleLock.lock();
+        try {
+            Task removed = tasks.remove(task.getId());
+            if (removed != null) {
+                removeFromSchedule(removed);
+                unindex(removed.getId());
+                events.deleted(TaskType.TASK, removed.getId());
+            }
+        } finally {
+            scheduleLock.unlock();
+        }
+        forget(task.getId());
+    }
+
+    @Override
+    public void deleteEpic(Epic epic) {
+        ReentrantLock epicLock = lockFor(epic.getId());
+        epicLock.lock();
+        try {
+            Epic removed = epics.remove(epic.getId());
+            if (removed == null) {
+                return;
+            }
+            unindex(removed.getId());
+            scheduleLock.lock();
+            try {
+                for (Subtask subtask : removed.getSubtasks()) {
+                    Subtask removedSubtask = subtasks.remove(subtask.getId());
+                    if (removedSubtask != null) {
+                        removeFromSchedule(removedSubtask);
+                        unindex(removedSubtask.getId());
+                        events.deleted(TaskType.SUBTASK, removedSubtask.getId());
+                    }
+                }
+            } finally {
+                scheduleLock.unlock();
+            }
+            events.deleted(TaskType.EPIC, removed.getId());
+            removed.getSubtasks().forEach(subtask -> forget(subtask.getId()));
+        } finally {
+            epicLock.unlock();
+        }
+        forget(epic.getId());
+    }
+
+    @Override
+    public void deleteSubtask(Subtask subtask) {
+        ReentrantLock epicLock = lockFor(subtask.getEpicId());
+        epicLock.lock();
+        try {
+            Epic currentEpic = epics.get(subtask.getEpicId());
+            TaskEvents.EpicState before = events.epicState(currentEpic);
+            if (currentEpic != null) {
+                currentEpic.removeSubtask(subtask);
+                reindexStatus(currentEpic);
+            }
+            scheduleLock.lock();
+            try {
+                Subtask removed = subtasks.remove(subtask.getId());
+                if (removed != null) {
+                    removeFromSchedule(removed);
+                    unindex(removed.getId());
+                    events.deleted(TaskType.SUBTASK, removed.getId());
+                }
+            } finally {
+                scheduleLock.unlock();
+            }
+            if (currentEpic != null) {
+                events.epicRecomputed(currentEpic, before);
+            }
+        } finally {
+            epicLock.unlock();
+        }
+        forget(subtask.getId());
+    }
+
+    // Копия списка снимается под блокировкой эпика, чтобы не пересечься с его изменением.
+    @Override
+    public List<Subtask> getSubtasksInEpic(Epic epic) {
+        ReentrantLock epicLock = lockFor(epic.getId());
+        epicLock.lock();
+        try {
+            Epic stored = epics.get(epic.getId());
+            return stored == null ? new ArrayList<>() : new ArrayList<>(stored.getSubtasks());
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return new ArrayList<>(prioritizedTasks);
+    }
+
+    // Страницы снимаются с ConcurrentSkipListSet без блокировок; обход слабо согласован с параллельной записью.
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, int limit) {
+        return page(prioritizedTasks.tailSet(probe(from), true), limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(Task cursor, int limit) {
+        if (cursor.getStartTime() == null) {
+            throw new IllegalArgumentException("У задачи-курсора не задано время начала");
+        }
+        return page(prioritizedTasks.tailSet(cursor, false), limit);
+    }
+
+    private static List<Task> page(Collection<Task> tail, int limit) {
+        List<Task> result = new ArrayList<>(Math.min(limit, 64));
+        for (Task task : tail) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(task);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public void forEachPrioritized(Consumer<? super Task> action) {
+        prioritizedTasks.forEach(action);
+    }
+
+    @Override
+    public Collection<Task> getTaskView() {
+        return Collections.unmodifiableCollection(tasks.values());
+    }
+
+    // Копии эпиков снимаются по мере обхода, а не заранее.
+    @Override
+    public Collection<Epic> getEpicView() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Epic> iterator() {
+                Iterator<Epic> stored = epics.values().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return stored.hasNext();
+                    }
+
+                    @Override
+                    public Epic next() {
+                        return copyOf(stored.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return epics.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Subtask> getSubtaskView() {
+        return Collections.unmodifiableCollection(subtasks.values());
+    }
+
+    // Эпики копируются уже после выхода из монитора индекса: изменяющие методы берут их в обратном порядке.
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        List<Task> result;
+        synchronized (statusIndex) {
+            result = statusIndex.get(status);
+        }
+        result.replaceAll(this::published);
+        return result;
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(TaskType type, Status status) {
+        List<Task> result;
+        synchronized (statusIndex) {
+            result = statusIndex.get(type, status);
+        }
+        result.replaceAll(this::published);
+        return result;
+    }
+
+    @Override
+    public int getStatusCount(Status status) {
+        synchronized (statusIndex) {
+            return statusIndex.count(status);
+        }
+    }
+
+    @Override
+    public int getStatusCount(TaskType type, Status status) {
+        synchronized (statusIndex) {
+            return statusIndex.count(type, status);
+        }
+    }
+
+    // Задача могла быть удалена между поиском по индексу и чтением карты - такие пропускаются.
+    @Override
+    public List<Task> search(String query, int limit) {
+        List<Integer> ids;
+        synchronized (textIndex) {
+            ids = textIndex.search(query, limit);
+        }
+        List<Task> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                Epic epic = epics.get(id);
+                task = epic != null ? copyOf(epic) : null;
+            }
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    public void setOverlapScanListener(IntConsumer listener) {
+        schedule.setScanListener(listener);
+    }
+
+    @Override
+    public boolean isTaskOverlapping(Task task) {
+        scheduleLock.lock();
+        try {
+            return schedule.hasOverlapping(task);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task task) {
+        scheduleLock.lock();
+        try {
+            return schedule.findOverlapping(task);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    // Начала задач упорядочены в prioritizedTasks, поэтому диапазон снимается с него без блокировки.
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        IntervalIndex.requireWindow(from, to);
+        return new ArrayList<>(prioritizedTasks.subSet(probe(from), true, probe(to), false));
+    }
+
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime instant) {
+        return getTasksIntersecting(instant, instant.plusNanos(1));
+    }
+
+    @Override
+    public List<Task> getTasksIntersecting(LocalDateTime from, LocalDateTime to) {
+        scheduleLock.lock();
+        try {
+            return schedule.findIntersecting(from, to);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public LocalDateTime findEarliestSlot(Duration duration, LocalDateTime earliestStart) {
+        return findEarliestSlot(duration, earliestStart, null, null);
+    }
+
+    // Слот свободен на момент поиска; к моменту addTask его может занять другой поток, тогда добавление будет отклонено.
+    @Override
+    public LocalDateTime findEarliestSlot(Duration duration, LocalDateTime earliestStart, LocalTime workdayStart, LocalTime workdayEnd) {
+        scheduleLock.lock();
+        try {
+            return schedule.findFreeSlot(duration, earliestStart, workdayStart, workdayEnd);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    // Задача-граница для поиска в prioritizedTasks: меньше любой настоящей задачи с тем же startTime.
+    private static Task probe(LocalDateTime startTime) {
+        return new Task(Integer.MIN_VALUE, null, null, null, null, startTime);
+    }
+
+    // Планирование пакета общее с InMemoryTaskManager (BatchSweep); здесь только блокировки:
+    // полосы затронутых эпиков на всю операцию и scheduleLock на фазу изменения карт и расписания.
+    @Override
+    public List<BatchOutcome> addAll(List<? extends Task> items) {
+        Set<Integer> epicIds = new HashSet<>();
+        for (Task item : items) {
+            if (item instanceof Subtask) {
+                epicIds.add(((Subtask) item).getEpicId());
+            }
+        }
+        BatchSweep sweep = new BatchSweep(items, new BatchStore(epicIds));
+        List<ReentrantLock> locks = lockStripes(epicIds);
+        try {
+            scheduleLock.lock();
+            try {
+                sweep.add();
+            } finally {
+                scheduleLock.unlock();
+            }
+            sweep.addToEpics();
+        } finally {
+            unlockAll(locks);
+        }
+        return sweep.outcomes();
+    }
+
+    @Override
+    public List<BatchOutcome> updateAll(List<? extends Task> items) {
+        Set<Integer> epicIds = new HashSet<>();
+        for (Task item : items) {
+            if (item instanceof Epic) {
+                epicIds.add(item.getId());
+            } else if (item instanceof Subtask) {
+                epicIds.add(((Subtask) item).getEpicId());
+                Subtask stored = subtasks.get(item.getId());
+                if (stored != null) {
+                    epicIds.add(stored.getEpicId());
+                }
+            }
+        }
+        BatchSweep sweep = new BatchSweep(items, new BatchStore(epicIds));
+        List<ReentrantLock> locks = lockStripes(epicIds);
+        try {
+            scheduleLock.lock();
+            try {
+                sweep.update();
+            } finally {
+                scheduleLock.unlock();
+            }
+            sweep.updateEpics();
+        } finally {
+            unlockAll(locks);
+        }
+        return sweep.outcomes();
+    }
+
+    @Override
+    public List<BatchOutcome> deleteAll(List<? extends Task> items) {
+        Set<Integer> epicIds = new HashSet<>();
+        for (Task item : items) {
+            if (item instanceof Epic) {
+                epicIds.add(item.getId());
+            } else if (item instanceof Subtask) {
+                Subtask stored = subtasks.get(item.getId());
+                epicIds.add(stored != null ? stored.getEpicId() : ((Subtask) item).getEpicId());
+            }
+        }
+        BatchSweep sweep = new BatchSweep(items, new BatchStore(epicIds));
+        List<ReentrantLock> locks = lockStripes(epicIds);
+        try {
+            scheduleLock.lock();
+            try {
+                sweep.delete();
+            } finally {
+                scheduleLock.unlock();
+            }
+            sweep.deleteFromEpics();
+        } finally {
+            unlockAll(locks);
+        }
+        sweep.forgotten().forEach(this::forget);
+        return sweep.outcomes();
+    }
+
+    private Task findStoredOfType(Task task) {
+        if (task instanceof Epic) {
+            return epics.get(task.getId());
+        }
+        if (task instanceof Subtask) {
+            return subtasks.get(task.getId());
+        }
+        return tasks.get(task.getId());
+    }
+
+    // Полосы берутся по возрастанию номера, поэтому два пакета не могут ждать друг друга по кругу.
+    private List<ReentrantLock> lockStripes(Set<Integer> epicIds) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (int epicId : epicIds) {
+            stripes.add(Math.floorMod(epicId, STRIPES));
+        }
+        List<ReentrantLock> locked = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            epicLocks[stripe].lock();
+            locked.add(epicLocks[stripe]);
+        }
+        return locked;
+    }
+
+    private List<ReentrantLock> lockStripes(int epicId, int otherEpicId) {
+        int first = Math.floorMod(epicId, STRIPES);
+        int second = Math.floorMod(otherEpicId, STRIPES);
+        if (first == second) {
+            epicLocks[first].lock();
+            return List.of(epicLocks[first]);
+        }
+        ReentrantLock lower = epicLocks[Math.min(first, second)];
+        ReentrantLock upper = epicLocks[Math.max(first, second)];
+        lower.lock();
+        upper.lock();
+        return List.of(lower, upper);
+    }
+
+    private List<ReentrantLock> lockAllStripes() {
+        for (ReentrantLock lock : epicLocks) {
+            lock.lock();
+        }
+        return Arrays.asList(epicLocks);
+    }
+
+    private static void unlockAll(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(int epicId) {
+        return epicLocks[Math.floorMod(epicId, STRIPES)];
+    }
+
+    private Epic copyOf(Epic epic) {
+        ReentrantLock epicLock = lockFor(epic.getId());
+        epicLock.lock();
+        try {
+            return new Epic(epic);
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    private Task published(Task task) {
+        return task instanceof Epic ? copyOf((Epic) task) : task;
+    }
+
+    // вызывается только под scheduleLock
+    private void addToSchedule(Task task) {
+        if (task.getStartTime() != null) {
+            schedule.add(task);
+            prioritizedTasks.add(task);
+        }
+    }
+
+    // вызывается только под scheduleLock
+    private void removeFromSchedule(Task task) {
+        if (task.getStartTime() != null) {
+            schedule.remove(task);
+            prioritizedTasks.remove(task);
+        }
+    }
+
+    private void index(Task task) {
+        reindexStatus(task);
+        synchronized (textIndex) {
+            textIndex.put(task);
+        }
+    }
+
+    // пересчитанный эпик меняет только статус, слова в нём те же
+    private void reindexStatus(Task task) {
+        synchronized (statusIndex) {
+            statusIndex.put(task);
+        }
+    }
+
+    private void unindex(int id) {
+        synchronized (statusIndex) {
+            statusIndex.remove(id);
+        }
+        synchronized (textIndex) {
+            textIndex.remove(id);
+        }
+    }
+
+    private void recordView(Task task) {
+        history.add(task);
+    }
+
+    private void forget(int id) {
+        history.remove(id);
+    }
+
+    // Доступ пакетных операций BatchSweep к хранилищу; epicIds - эпики, чьи полосы взяты на время пакета.
+    private class BatchStore implements BatchSweep.Store {
+        private final Set<Integer> epicIds;
+
+        BatchStore(Set<Integer> epicIds) {
+            this.epicIds = epicIds;
+        }
+
+        @Override
+        public Task findStored(Task task) {
+            return findStoredOfType(task);
+        }
+
+        @Override
+        public boolean hasEpic(int epicId) {
+            return epics.containsKey(epicId);
+        }
+
+        @Override
+        public boolean isEpicGuarded(int epicId) {
+            return epicIds.contains(epicId);
+        }
+
+        @Override
+        public int nextId() {
+            return currentId.getAndIncrement();
+        }
+
+        @Override
+        public Task put(Task task) {
+            if (task instanceof Epic) {
+                return epics.put(task.getId(), (Epic) task);
+            }
+            if (task instanceof Subtask) {
+                return subtasks.put(task.getId(), (Subtask) task);
+            }
+            return tasks.put(task.getId(), task);
+        }
+
+        @Override
+        public Task remove(Task task) {
+            if (task instanceof Epic) {
+                return epics.remove(task.getId());
+            }
+            if (task instanceof Subtask) {
+                return subtasks.remove(task.getId());
+            }
+            return tasks.remove(task.getId());
+        }
+
+        @Override
+        public Epic getEpic(int epicId) {
+            return epics.get(epicId);
+        }
+
+        @Override
+        public Epic epicForUpdate(int epicId) {
+            return epics.get(epicId);
+        }
+
+        @Override
+        public boolean overlaps(Task task) {
+            return schedule.hasOverlapping(task);
+        }
+
+        @Override
+        public void addToSchedule(List<Task> timed) {
+            timed.forEach(ConcurrentTaskManager.this::addToSchedule);
+        }
+
+        @Override
+        public void addToSchedule(Task task) {
+            ConcurrentTaskManager.this.addToSchedule(task);
+        }
+
+        @Override
+        public void removeFromSchedule(Task task) {
+            ConcurrentTaskManager.this.removeFromSchedule(task);
+        }
+
+        @Override
+        public void index(Task task) {
+            ConcurrentTaskManager.this.index(task);
+        }
+
+        @Override
+        public void reindexStatus(Task task) {
+            ConcurrentTaskManager.this.reindexStatus(task);
+        }
+
+        @Override
+        public void unindex(int id) {
+            ConcurrentTaskManager.this.unindex(id);
+        }
+
+        @Override
+        public TaskEvents events() {
+            return events;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package service;
+
+// Насколько запись на диск переживает сбой; чем надёжнее режим, тем дольше запись.
+public enum Durability {
+    // файл переписывается на месте: сбой во время записи оставляет его обрезанным
+    NONE,
+    // запись во временный файл и атомарное переименование: на диске всегда целая старая или новая версия,
+    // но после сбоя питания последние записи могут не успеть дойти до диска
+    ATOMIC,
+    // как ATOMIC, но данные и каталог сбрасываются на диск через fsync до возврата; журнал - после каждой записи
+    FSYNC
+}
@@ -0,0 +1,79 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Запись файлов через FileChannel с выбранной гарантией сохранности (Durability).
+final class DurableFiles {
+    private DurableFiles() {
+    }
+
+    static void write(Path path, byte[] bytes, Durability durability) throws IOException {
+        if (durability == Durability.NONE) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, bytes);
+            }
+            return;
+        }
+        // временный файл лежит в том же каталоге, иначе переименование не будет атомарным;
+        // имя у каждой записи своё, чтобы одновременные записи не писали в один и тот же файл
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writeFully(channel, bytes);
+                if (durability == Durability.FSYNC) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (durability == Durability.FSYNC) {
+            syncDirectory(path);
+        }
+    }
+
+    static void append(Path path, byte[] bytes, Durability durability) throws IOException {
+        boolean created = !Files.exists(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            writeFully(channel, bytes);
+            if (durability == Durability.FSYNC) {
+                channel.force(false);
+            }
+        }
+        if (created && durability == Durability.FSYNC) {
+            syncDirectory(path);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Новое имя файла сохраняется только вместе с записью каталога.
+    static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // на Windows каталог нельзя открыть как файл - там переименование сбрасывается самой ОС
+        }
+    }
+}
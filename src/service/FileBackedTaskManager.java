@@ -3,84 +3,697 @@ package service;
 import model.*;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class FileBackedTaskManager extends InMemoryTaskManager implements TaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements TaskManager, AutoCloseable {
     private final Path filePath;
+    private final SaveMode saveMode;
+    private final TaskJournal journal;
+    // каталог сегментов для SaveMode.PARTITIONED, иначе null
+    private final TaskPartitions partitions;
+    private final FlushPolicy flushPolicy;
+    private final Duration flushInterval;
+    private final SnapshotFormat snapshotFormat;
+    private final Durability durability;
+    private final ScheduledExecutorService flusher;
+    // фоновое сжатие журнала (StorageConfig.withCompaction), иначе null
+    private final ScheduledExecutorService compactor;
+    private final Duration compactionInterval;
+    private final long compactionBytes;
+    private final long compactionRecords;
+    // размер журнала с последней контрольной точки
+    private final AtomicLong journalBytes = new AtomicLong();
+    private final AtomicLong journalRecords = new AtomicLong();
+    // контрольные точки идут по одной, иначе снимок более ранней мог бы лечь поверх более поздней
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private final LatencyHistogram checkpointLatency = new LatencyHistogram();
+
+    // изменения, ещё не записанные на диск (для GROUP_COMMIT и PERIODIC), защищены монитором менеджера
+    private final StringBuilder pendingJournal = new StringBuilder();
+    private boolean dirty;
+    private final TreeSet<Integer> dirtyPartitions = new TreeSet<>();
+    private boolean flushScheduled;
+    // фоновые задачи планируются при первом изменении, а не в конструкторе, где this ещё не готов
+    private boolean periodicStarted;
+    private boolean compactionStarted;
+    private volatile ManagerSaveException flushError;
+    private volatile StorageListener storageListener;
+    // описания, оставленные в двоичном снимке (StorageConfig.withLazyDescriptions), иначе null
+    private LazyTextStore texts;
 
     public FileBackedTaskManager(String path) {
+        this(path, SaveMode.SNAPSHOT);
+    }
+
+    public FileBackedTaskManager(String path, SaveMode saveMode) {
+        this(path, StorageConfig.defaults().withSaveMode(saveMode));
+    }
+
+    public FileBackedTaskManager(String path, SaveMode saveMode, FlushPolicy flushPolicy, Duration flushInterval) {
+        this(path, StorageConfig.defaults().withSaveMode(saveMode).withFlushPolicy(flushPolicy, flushInterval));
+    }
+
+    public FileBackedTaskManager(String path, StorageConfig config) {
         this.filePath = Paths.get(path);
+        this.saveMode = config.getSaveMode();
+        this.durability = config.getDurability();
+        this.journal = new TaskJournal(TaskJournal.pathFor(filePath), durability);
+        this.partitions = saveMode == SaveMode.PARTITIONED
+                ? new TaskPartitions(TaskPartitions.pathFor(filePath), durability) : null;
+        this.flushPolicy = config.getFlushPolicy();
+        this.flushInterval = config.getFlushInterval();
+        this.snapshotFormat = config.getSnapshotFormat();
+        if (flushPolicy == FlushPolicy.SYNC) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "task-manager-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.compactionInterval = config.getCompactionInterval();
+        this.compactionBytes = config.getCompactionBytes();
+        this.compactionRecords = config.getCompactionRecords();
+        if (saveMode != SaveMode.JOURNAL || compactionInterval == null) {
+            this.compactor = null;
+        } else {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "task-manager-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
+    public SaveMode getSaveMode() {
+        return saveMode;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void setStorageListener(StorageListener storageListener) {
+        this.storageListener = storageListener;
+    }
+
+    // Время записи контрольных точек журнала в наносекундах: и по save(), и фоновых.
+    public LatencyHistogram getCheckpointLatency() {
+        return checkpointLatency;
+    }
+
+    // Полная запись снимка. В режиме JOURNAL после записи снимка вошедшие в него сегменты журнала удаляются.
     public void save() {
-        try (Writer fileWriter = new FileWriter(filePath.toFile())) {
-            fileWriter.write("id,type,name,status,description,epic\n");
-            for (Task task : super.getTasks().values()) {
-                fileWriter.write(toString(task));
+        if (flusher == null) {
+            saveNow();
+        } else {
+            runOnFlusher(this::saveNow);
+        }
+    }
+
+    // Дожидается записи на диск всех изменений, сделанных до вызова.
+    public void flush() {
+        if (flusher != null) {
+            runOnFlusher(this::writePending);
+        }
+        ManagerSaveException error = flushError;
+        if (error != null) {
+            flushError = null;
+            throw error;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            // дожидается начатой проверки: она может отдать контрольную точку потоку записи
+            compactor.close();
+        }
+        try {
+            flush();
+        } finally {
+            if (flusher != null) {
+                flusher.shutdown();
+            }
+            // дожидается контрольной точки, начатой до shutdown()
+            checkpointLock.lock();
+            try {
+                if (texts != null) {
+                    texts.close();
+                }
+            } finally {
+                checkpointLock.unlock();
             }
+        }
+    }
 
-            for (Epic epic : super.getEpics().values()) {
-                fileWriter.write(toString(epic));
+    private void runOnFlusher(Runnable action) {
+        try {
+            flusher.submit(action).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Запись на диск была прервана.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ManagerSaveException) {
+                throw (ManagerSaveException) e.getCause();
             }
+            throw new ManagerSaveException("Произошла ошибка во время записи файла.", e.getCause());
+        }
+    }
 
-            for (Subtask subtask : super.getSubtasks().values()) {
-                fileWriter.write(toString(subtask));
+    private void saveNow() {
+        if (partitions != null) {
+            synchronized (this) {
+                markAllPartitions();
+            }
+            writePartitions();
+            return;
+        }
+        if (saveMode == SaveMode.JOURNAL) {
+            checkpoint();
+            return;
+        }
+        if (flusher == null) {
+            // в режиме SYNC пишет вызывающий поток: под монитором более старый снимок не ляжет поверх нового
+            synchronized (this) {
+                writeSnapshot(renderSnapshot());
+                dirty = false;
+            }
+            return;
+        }
+        BinarySnapshot.Image snapshot;
+        synchronized (this) {
+            snapshot = renderSnapshot();
+            dirty = false;
+        }
+        writeSnapshot(snapshot);
+    }
+
+    // Контрольная точка журнала. Под монитором берётся снимок состояния за O(1) и начинается новый сегмент,
+    // а рендер и запись снимка идут уже без монитора, так что изменяющие методы их не ждут.
+    // Сегменты удаляются только после записи снимка: если сбой случится между этими шагами,
+    // при загрузке они повторно применятся к снимку, который уже их содержит, и результат будет тем же.
+    private void checkpoint() {
+        checkpointLock.lock();
+        try {
+            long start = System.nanoTime();
+            TaskSnapshot state;
+            int covered;
+            synchronized (this) {
+                state = snapshot();
+                // несохранённые записи уже отражены в снимке
+                pendingJournal.setLength(0);
+                covered = journal.rotate();
+                journalBytes.set(0);
+                journalRecords.set(0);
+            }
+            BinarySnapshot.Image image = renderSnapshot(state.getTasks(), state.getEpics(), state.getSubtasks());
+            writeSnapshot(image);
+            journal.deleteSegmentsUpTo(covered);
+            checkpointLatency.record(System.nanoTime() - start);
+            reportWrite("checkpoint", image.bytes.length, start);
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        boolean exceeded = compactionBytes > 0 && journalBytes.get() >= compactionBytes
+                || compactionRecords > 0 && journalRecords.get() >= compactionRecords;
+        if (!exceeded) {
+            return;
+        }
+        try {
+            if (flusher == null) {
+                checkpoint();
+            } else {
+                // writePending() дописывает забранные записи без монитора; на том же потоке
+                // контрольная точка не сменит сегмент между тем, как записи забраны и дописаны
+                runOnFlusher(this::checkpoint);
+            }
+        } catch (ManagerSaveException e) {
+            // исключение отменило бы дальнейшие проверки; ошибка сообщается при следующем flush()
+            flushError = e;
+        }
+    }
+
+    // Забирает накопленные изменения под монитором, а пишет на диск уже без него,
+    // чтобы изменяющие методы не ждали ввода-вывода.
+    private void writePending() {
+        String batch = null;
+        BinarySnapshot.Image snapshot = null;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingJournal.length() > 0) {
+                batch = pendingJournal.toString();
+                pendingJournal.setLength(0);
+            }
+            if (dirty) {
+                snapshot = renderSnapshot();
+                dirty = false;
+            }
+        }
+        try {
+            if (snapshot != null) {
+                writeSnapshot(snapshot);
+            }
+            if (batch != null) {
+                appendJournal(batch);
+            }
+            if (partitions != null) {
+                writePartitions();
+            }
+        } catch (ManagerSaveException e) {
+            synchronized (this) {
+                if (batch != null) {
+                    pendingJournal.insert(0, batch);
+                }
+                dirty |= snapshot != null;
+            }
+            flushError = e;
+        }
+    }
+
+    // вызывается под монитором
+    private BinarySnapshot.Image renderSnapshot() {
+        return renderSnapshot(tasks.values(), epics.values(), subtasks.values());
+    }
+
+    private BinarySnapshot.Image renderSnapshot(Collection<Task> tasks, Collection<Epic> epics,
+                                                Collection<Subtask> subtasks) {
+        if (snapshotFormat == SnapshotFormat.BINARY) {
+            List<Task> all = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+            all.addAll(tasks);
+            all.addAll(epics);
+            all.addAll(subtasks);
+            return BinarySnapshot.write(all, texts);
+        }
+        return new BinarySnapshot.Image(renderCsv(tasks, epics, subtasks).getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    private synchronized String renderCsv() {
+        return renderCsv(tasks.values(), epics.values(), subtasks.values());
+    }
+
+    private String renderCsv(Collection<Task> tasks, Collection<Epic> epics, Collection<Subtask> subtasks) {
+        StringBuilder snapshot = new StringBuilder("id,type,name,status,description,epic\n");
+        for (Task task : tasks) {
+            snapshot.append(toString(task));
+        }
+
+        for (Epic epic : epics) {
+            snapshot.append(toString(epic));
+        }
+
+        for (Subtask subtask : subtasks) {
+            snapshot.append(toString(subtask));
+        }
+        return snapshot.toString();
+    }
+
+    private void writeSnapshot(BinarySnapshot.Image snapshot) {
+        long start = System.nanoTime();
+        try {
+            if (texts != null) {
+                // ленивые описания переходят на новые смещения вместе с перезаписью файла
+                texts.rewrite(snapshot.bytes, snapshot.textOffsets, durability);
+            } else {
+                DurableFiles.write(filePath, snapshot.bytes, durability);
             }
         } catch (IOException e) {
             throw new ManagerSaveException("Произошла ошибка во время записи файла.", e);
         }
+        reportWrite("snapshot", snapshot.bytes.length, start);
     }
 
-    public static FileBackedTaskManager loadFromFile(File file) {
-        FileBackedTaskManager manager = new FileBackedTaskManager(file.getPath());
-        try (BufferedReader fileReader = new BufferedReader(new FileReader(file))) {
-            fileReader.readLine(); // пропускает строку с названием колонок
-            int maxId = 1;
-            while (fileReader.ready()) {
-                String line = fileReader.readLine();
-                Task task;
-                try {
-                    task = manager.fromString(line);
-                } catch (Exception e) {
-                    throw new ManagerSaveException("Ошибка при чтении строки: " + line, e);
-                }
-                if (task.getId() > maxId) {
-                    maxId = task.getId();
+    private void writePartitions() {
+        if (flusher == null) {
+            // в режиме SYNC пишет вызывающий поток: под монитором два потока не запишут сегмент в обратном порядке
+            synchronized (this) {
+                writePartitions(renderDirtyPartitions());
+            }
+        } else {
+            writePartitions(renderDirtyPartitions());
+        }
+    }
+
+    private synchronized Map<Integer, String> renderDirtyPartitions() {
+        Map<Integer, String> rendered = new TreeMap<>();
+        for (int partition : dirtyPartitions) {
+            StringBuilder records = new StringBuilder();
+            int from = TaskPartitions.firstId(partition);
+            for (int id = from; id < from + TaskPartitions.SIZE; id++) {
+                Task task = findStored(id);
+                if (task != null) {
+                    records.append(toString(task));
                 }
-                if (task instanceof Epic) {
-                    manager.epics.put(task.getId(), (Epic) task);
-                } else if (task instanceof Subtask) {
-                    manager.subtasks.put(task.getId(), (Subtask) task);
-                } else {
-                    manager.tasks.put(task.getId(), task);
+            }
+            rendered.put(partition, records.toString());
+        }
+        dirtyPartitions.clear();
+        return rendered;
+    }
+
+    // Сегменты, которые не удалось записать, возвращаются в очередь.
+    private void writePartitions(Map<Integer, String> rendered) {
+        List<Integer> remaining = new ArrayList<>(rendered.keySet());
+        for (Map.Entry<Integer, String> partition : rendered.entrySet()) {
+            long start = System.nanoTime();
+            try {
+                int bytes = partitions.write(partition.getKey(), partition.getValue());
+                reportWrite("partition", bytes, start);
+            } catch (ManagerSaveException e) {
+                synchronized (this) {
+                    dirtyPartitions.addAll(remaining);
                 }
+                throw e;
+            }
+            remaining.remove(partition.getKey());
+        }
+    }
+
+    // вызывается под монитором
+    private void markAllPartitions() {
+        dirtyPartitions.addAll(partitions.stored());
+        tasks.values().forEach(task -> dirtyPartitions.add(TaskPartitions.partitionOf(task.getId())));
+        epics.values().forEach(epic -> dirtyPartitions.add(TaskPartitions.partitionOf(epic.getId())));
+        subtasks.values().forEach(subtask -> dirtyPartitions.add(TaskPartitions.partitionOf(subtask.getId())));
+    }
+
+    // вызывается под монитором
+    private void markPartitions(Collection<Integer> ids) {
+        for (int id : ids) {
+            dirtyPartitions.add(TaskPartitions.partitionOf(id));
+        }
+        if (flushPolicy == FlushPolicy.SYNC) {
+            writePartitions();
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    private void appendJournal(String records) {
+        long start = System.nanoTime();
+        int bytes = journal.append(records);
+        journalBytes.addAndGet(bytes);
+        journalRecords.addAndGet(records.chars().filter(c -> c == '\n').count());
+        reportWrite("journal", bytes, start);
+    }
+
+    private void reportWrite(String target, long bytes, long start) {
+        StorageListener listener = storageListener;
+        if (listener != null) {
+            listener.onWrite(target, bytes, System.nanoTime() - start);
+        }
+    }
+
+    // Выгружает текущее состояние в CSV независимо от формата снимка.
+    public void exportCsv(Path path) {
+        try {
+            Files.writeString(path, renderCsv(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время записи файла.", e);
+        }
+    }
+
+    // Формат снимка определяется по содержимому файла: двоичный снимок начинается с BinarySnapshot.MAGIC.
+    // Если рядом есть каталог сегментов, состояние загружается из него в режиме SaveMode.PARTITIONED,
+    // а если есть журнал - в режиме SaveMode.JOURNAL.
+    public static FileBackedTaskManager loadFromFile(File file) {
+        if (Files.isDirectory(TaskPartitions.pathFor(file.toPath()))) {
+            return loadFromFile(file, StorageConfig.defaults().withSaveMode(SaveMode.PARTITIONED));
+        }
+        SnapshotFormat format = BinarySnapshot.isBinary(file.toPath()) ? SnapshotFormat.BINARY : SnapshotFormat.CSV;
+        StorageConfig config = StorageConfig.defaults().withSnapshotFormat(format);
+        if (new TaskJournal(TaskJournal.pathFor(file.toPath())).exists()) {
+            config = config.withSaveMode(SaveMode.JOURNAL);
+        }
+        return loadFromFile(file, config);
+    }
 
-                manager.currentId = maxId + 1;
+    public static FileBackedTaskManager loadFromFile(File file, SaveMode saveMode) {
+        SnapshotFormat format = BinarySnapshot.isBinary(file.toPath()) ? SnapshotFormat.BINARY : SnapshotFormat.CSV;
+        return loadFromFile(file, StorageConfig.defaults().withSaveMode(saveMode).withSnapshotFormat(format));
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, StorageConfig config) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file.getPath(), config);
+        if (manager.partitions != null) {
+            manager.partitions.readAll(manager::fromString).forEach(manager::putLoaded);
+        } else if (BinarySnapshot.isBinary(file.toPath())) {
+            if (config.getDescriptionCacheSize() > 0 && manager.snapshotFormat == SnapshotFormat.BINARY) {
+                manager.texts = new LazyTextStore(file.toPath(), config.getDescriptionCacheSize());
             }
-            // привяжем подзадачи к эпику, чтобы также посчитать duration, startTime и endTime в epic.setSubtasks()
-            for (Epic epic : manager.getEpics().values()) {
-                List<Subtask> subtasksForEpic = manager.getSubtasks().values().stream().filter(subtask -> subtask.getEpicId() == epic.getId()).toList();
-                epic.setSubtasks(subtasksForEpic);
+            BinarySnapshot.read(file.toPath(), manager.texts).forEach(manager::putLoaded);
+        } else if (file.exists() || !Files.exists(manager.journal.getPath())) {
+            // без снимка можно начать только с журнала, иначе отсутствие файла - ошибка
+            try (BufferedReader fileReader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+                fileReader.readLine(); // пропускает строку с названием колонок
+                while (fileReader.ready()) {
+                    String line = fileReader.readLine();
+                    Task task;
+                    try {
+                        task = manager.fromString(line);
+                    } catch (Exception e) {
+                        throw new ManagerSaveException("Ошибка при чтении строки: " + line, e);
+                    }
+                    manager.putLoaded(task);
+                }
+            } catch (IOException e) {
+                throw new ManagerSaveException("Произошла ошибка во время чтения файла.", e);
             }
-        } catch (IOException e) {
-            throw new ManagerSaveException("Произошла ошибка во время чтения файла.", e);
+        }
+        manager.replayJournal();
+        manager.bindLoaded();
+        synchronized (manager) {
+            // журнал, накопленный до загрузки, может уже превышать порог
+            manager.startCompaction();
+        }
+        if (manager.texts != null) {
+            // индекс по словам построен, строки снимка больше не нужны в памяти
+            manager.texts.preload(null);
+        }
+        if (manager.saveMode != SaveMode.JOURNAL && manager.journal.exists()) {
+            // в других режимах журнал не очищается при записи и при следующей загрузке
+            // применился бы поверх более нового снимка, поэтому он сразу переносится в снимок
+            manager.saveNow();
+            manager.journal.truncate();
         }
 
         return manager;
     }
 
+    // Привязывает подзадачи к эпикам за один проход, чтобы посчитать duration, startTime и endTime в epic.setSubtasks(),
+    // и одним построением восстанавливает расписание для getPrioritizedTasks() и проверки пересечений,
+    // а затем индексы по статусам и по словам.
+    private void bindLoaded() {
+        Map<Integer, List<Subtask>> subtasksByEpic = new HashMap<>(epics.size() * 2);
+        for (Subtask subtask : subtasks.values()) {
+            subtasksByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
+        }
+        for (Epic epic : epics.values()) {
+            List<Subtask> subtasksForEpic = subtasksByEpic.get(epic.getId());
+            epic.setSubtasks(subtasksForEpic != null ? subtasksForEpic : new ArrayList<>());
+        }
+        rebuildSchedule();
+        rebuildIndexes();
+    }
+
+    private void putLoaded(Task task) {
+        deleteLoaded(task.getId());
+        if (task instanceof Epic) {
+            epics.put(task.getId(), (Epic) task);
+        } else if (task instanceof Subtask) {
+            subtasks.put(task.getId(), (Subtask) task);
+        } else {
+            tasks.put(task.getId(), task);
+        }
+        if (task.getId() >= currentId) {
+            currentId = task.getId() + 1;
+        }
+    }
+
+    private void deleteLoaded(int id) {
+        tasks.remove(id);
+        epics.remove(id);
+        subtasks.remove(id);
+    }
+
+    // Применяет записи журнала поверх загруженного снимка.
+    // Недописанную последнюю строку (сбой во время записи) TaskJournal отрезает сам.
+    private void replayJournal() {
+        List<String> records = journal.readRecords();
+        journalRecords.set(records.size());
+        journalBytes.set(records.isEmpty() ? 0 : journal.sizeInBytes());
+        for (String record : records) {
+            try {
+                applyRecord(record);
+            } catch (Exception e) {
+                throw new ManagerSaveException("Ошибка при чтении записи журнала: " + record, e);
+            }
+        }
+    }
+
+    private void applyRecord(String record) {
+        int separator = record.indexOf(',');
+        String operation = record.substring(0, separator);
+        String value = record.substring(separator + 1);
+        switch (operation) {
+            case TaskJournal.PUT -> putLoaded(fromString(value));
+            case TaskJournal.DELETE -> deleteLoaded(Integer.parseInt(value));
+            case TaskJournal.CLEAR -> {
+                TaskType type = TaskType.valueOf(value);
+                if (type == TaskType.TASK) {
+                    tasks.clear();
+                } else {
+                    if (type == TaskType.EPIC) {
+                        epics.clear();
+                    }
+                    subtasks.clear();
+                }
+            }
+            default -> throw new IllegalArgumentException("Неизвестная операция журнала: " + operation);
+        }
+    }
+
+    // В режиме SNAPSHOT переписывает весь файл, в режиме JOURNAL дописывает одну запись на изменённую задачу.
+    private void persistPut(Task task) {
+        persistPut(List.of(task));
+    }
+
+    private void persistPut(List<Task> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        if (partitions != null) {
+            List<Integer> ids = new ArrayList<>(changed.size());
+            changed.forEach(task -> ids.add(task.getId()));
+            markPartitions(ids);
+            return;
+        }
+        if (saveMode == SaveMode.SNAPSHOT) {
+            markDirty();
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (Task task : changed) {
+            Task stored = findStored(task.getId());
+            if (stored != null) {
+                records.append(TaskJournal.PUT).append(',').append(toString(stored));
+            }
+        }
+        if (!records.isEmpty()) {
+            appendRecord(records.toString());
+        }
+    }
+
+    private void persistDelete(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (partitions != null) {
+            markPartitions(ids);
+            return;
+        }
+        if (saveMode == SaveMode.SNAPSHOT) {
+            markDirty();
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (int id : ids) {
+            records.append(TaskJournal.DELETE).append(',').append(id).append('\n');
+        }
+        appendRecord(records.toString());
+    }
+
+    private void persistClear(TaskType type) {
+        if (partitions != null) {
+            markPartitions(partitions.stored().stream().map(TaskPartitions::firstId).toList());
+            return;
+        }
+        if (saveMode == SaveMode.SNAPSHOT) {
+            markDirty();
+            return;
+        }
+        appendRecord(TaskJournal.CLEAR + "," + type + "\n");
+    }
+
+    private void markDirty() {
+        if (flushPolicy == FlushPolicy.SYNC) {
+            save();
+        } else {
+            dirty = true;
+            scheduleFlush();
+        }
+    }
+
+    private void appendRecord(String record) {
+        startCompaction();
+        if (flushPolicy == FlushPolicy.SYNC) {
+            appendJournal(record);
+        } else {
+            pendingJournal.append(record);
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushPolicy == FlushPolicy.GROUP_COMMIT && !flushScheduled) {
+            flushScheduled = true;
+            flusher.schedule(this::writePending, flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } else if (flushPolicy == FlushPolicy.PERIODIC && !periodicStarted) {
+            periodicStarted = true;
+            long millis = Math.max(1, flushInterval.toMillis());
+            flusher.scheduleWithFixedDelay(this::writePending, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // вызывается под монитором; до первой записи в журнал сжимать нечего
+    private void startCompaction() {
+        if (compactor != null && !compactionStarted) {
+            compactionStarted = true;
+            long millis = Math.max(1, compactionInterval.toMillis());
+            compactor.scheduleWithFixedDelay(this::compactIfNeeded, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Строка CSV без заголовка. В названии и описании экранируются '\', ',' и переводы строк,
+    // чтобы каждая задача занимала ровно одну строку и разбиралась по запятым.
     public String toString(Task task) {
         String durationStr = task.getDuration() != null ? String.valueOf(task.getDuration().toMinutes()) : "null";
         String startTimeStr = task.getStartTime() != null ? task.getStartTime().toString() : "null";
         StringBuilder result = new StringBuilder(task.getId() + "," +
                 task.getType() + "," +
-                task.getName() + "," +
+                escape(task.getName()) + "," +
                 task.getStatus() + "," +
-                task.getDescription() + "," +
+                escape(task.getDescription()) + "," +
                 durationStr + "," +
                 startTimeStr);
         if (task instanceof Subtask) {
@@ -91,7 +704,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
     }
 
     public Task fromString(String value) {
-        String[] values = value.split(",");
+        String[] values = split(value);
         int id = Integer.parseInt(values[0]);
         String name = values[2];
         Status status = Status.valueOf(values[3]);
@@ -109,75 +722,193 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
         }
     }
 
+    private static String escape(String field) {
+        if (field == null) {
+            return "null";
+        }
+        StringBuilder result = null;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case ',' -> "\\,";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                default -> null;
+            };
+            if (replacement != null && result == null) {
+                result = new StringBuilder(field.length() + 8).append(field, 0, i);
+            }
+            if (result != null) {
+                if (replacement != null) {
+                    result.append(replacement);
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        return result == null ? field : result.toString();
+    }
+
+    // Разбивает строку по неэкранированным запятым. Обратная косая черта перед другим символом
+    // остаётся как есть: так читаются и файлы, записанные до появления экранирования.
+    private static String[] split(String line) {
+        if (line.indexOf('\\') < 0) {
+            return line.split(",");
+        }
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(i + 1);
+                switch (next) {
+                    case '\\', ',' -> field.append(next);
+                    case 'n' -> field.append('\n');
+                    case 'r' -> field.append('\r');
+                    default -> {
+                        field.append(c);
+                        continue;
+                    }
+                }
+                i++;
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
     @Override
-    public void clearTasks() {
+    public synchronized void clearTasks() {
         super.clearTasks();
-        save();
+        persistClear(TaskType.TASK);
     }
 
     @Override
-    public void clearEpics() {
+    public synchronized void clearEpics() {
         super.clearEpics();
-        save();
+        persistClear(TaskType.EPIC);
     }
 
     @Override
-    public void clearSubtasks() {
+    public synchronized void clearSubtasks() {
         super.clearSubtasks();
-        save();
+        persistClear(TaskType.SUBTASK);
     }
 
     @Override
-    public void addTask(Task task) {
+    public synchronized void addTask(Task task) {
         super.addTask(task);
-        save();
+        persistPut(task);
     }
 
     @Override
-    public void addEpic(Epic epic) {
+    public synchronized void addEpic(Epic epic) {
         super.addEpic(epic);
-        save();
+        persistPut(epic);
     }
 
     @Override
-    public void addSubtask(Subtask subtask) {
+    public synchronized void addSubtask(Subtask subtask) {
         super.addSubtask(subtask);
-        save();
+        persistPut(subtask);
     }
 
     @Override
-    public void updateTask(Task task) {
+    public synchronized void updateTask(Task task) {
         super.updateTask(task);
-        save();
+        persistPut(task);
     }
 
     @Override
-    public void updateEpic(Epic epic) {
+    public synchronized void updateEpic(Epic epic) {
         super.updateEpic(epic);
-        save();
+        persistPut(epic);
     }
 
     @Override
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
         super.updateSubtask(subtask);
-        save();
+        persistPut(subtask);
     }
 
     @Override
-    public void deleteTask(Task task) {
+    public synchronized void deleteTask(Task task) {
         super.deleteTask(task);
-        save();
+        persistDelete(List.of(task.getId()));
     }
 
     @Override
-    public void deleteEpic(Epic epic) {
+    public synchronized void deleteEpic(Epic epic) {
+        List<Integer> ids = new ArrayList<>();
+        Epic stored = epics.get(epic.getId());
+        (stored != null ? stored : epic).getSubtasks().forEach(subtask -> ids.add(subtask.getId()));
+        ids.add(epic.getId());
         super.deleteEpic(epic);
-        save();
+        persistDelete(ids);
     }
 
     @Override
-    public void deleteSubtask(Subtask subtask) {
+    public synchronized void deleteSubtask(Subtask subtask) {
         super.deleteSubtask(subtask);
-        save();
+        persistDelete(List.of(subtask.getId()));
+    }
+
+    @Override
+    public synchronized TaskSnapshot snapshot() {
+        return super.snapshot();
+    }
+
+    // Пакет записывается на диск один раз, а не после каждого элемента.
+    @Override
+    public synchronized List<BatchOutcome> addAll(List<? extends Task> items) {
+        List<BatchOutcome> outcomes = super.addAll(items);
+        persistPut(applied(items, outcomes));
+        return outcomes;
+    }
+
+    @Override
+    public synchronized List<BatchOutcome> updateAll(List<? extends Task> items) {
+        List<BatchOutcome> outcomes = super.updateAll(items);
+        persistPut(applied(items, outcomes));
+        return outcomes;
+    }
+
+    @Override
+    public synchronized List<BatchOutcome> deleteAll(List<? extends Task> items) {
+        List<List<Integer>> removedIds = new ArrayList<>(items.size());
+        for (Task item : items) {
+            List<Integer> ids = new ArrayList<>();
+            Epic epic = item instanceof Epic ? epics.get(item.getId()) : null;
+            if (epic != null) {
+                epic.getSubtasks().forEach(subtask -> ids.add(subtask.getId()));
+            }
+            ids.add(item.getId());
+            removedIds.add(ids);
+        }
+        List<BatchOutcome> outcomes = super.deleteAll(items);
+        List<Integer> deleted = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (outcomes.get(i) == BatchOutcome.APPLIED) {
+                deleted.addAll(removedIds.get(i));
+            }
+        }
+        persistDelete(deleted);
+        return outcomes;
+    }
+
+    private static List<Task> applied(List<? extends Task> items, List<BatchOutcome> outcomes) {
+        List<Task> result = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (outcomes.get(i) == BatchOutcome.APPLIED) {
+                result.add(items.get(i));
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,10 @@
+package service;
+
+public enum FlushPolicy {
+    // запись на диск в потоке вызывающего, до возврата из метода
+    SYNC,
+    // первое изменение открывает окно, все изменения внутри окна записываются одной операцией
+    GROUP_COMMIT,
+    // фоновый поток записывает накопленные изменения через равные промежутки времени
+    PERIODIC
+}
@@ -3,16 +3,14 @@ package service;
 import model.Task;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class InMemoryHistoryManager implements HistoryManager {
     private Node<Task> head;
 
     private Node<Task> tail;
 
-    private final Map<Integer, Node<Task>> history = new HashMap<>();
+    private final IntObjectMap<Node<Task>> history = new IntObjectMap<>();
 
     @Override
     public List<Task> getHistory() {
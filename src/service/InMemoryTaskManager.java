@@ -1,88 +1,110 @@
 package service;
 
 import model.Epic;
+import model.Status;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class InMemoryTaskManager implements TaskManager {
 
     public HistoryManager history = Managers.getDefaultHistory();
     protected int currentId = 1;
-    protected final HashMap<Integer, Task> tasks = new HashMap<>();
+    protected final IntObjectMap<Task> tasks = new IntObjectMap<>();
 
-    protected final HashMap<Integer, Epic> epics = new HashMap<>();
+    protected final IntObjectMap<Epic> epics = new IntObjectMap<>();
 
-    protected final HashMap<Integer, Subtask> subtasks = new HashMap<>();
+    protected final IntObjectMap<Subtask> subtasks = new IntObjectMap<>();
 
-    Set<Task> prioritizedTasks = new TreeSet<>((Task t1, Task t2) -> {
-        LocalDateTime time1 = t1.getStartTime();
-        LocalDateTime time2 = t2.getStartTime();
-        if (time1 == null && time2 == null) {
-            return t1.getId() - t2.getId();
-        }
-        if (time1 == null) return 1;
-        if (time2 == null) return -1;
+    // задачи с заданным startTime, упорядоченные по времени начала; по нему же ищутся пересечения
+    final IntervalIndex schedule = new IntervalIndex();
+
+    // задачи по типу и статусу; эпик переиндексируется после каждого изменения его подзадач
+    final StatusIndex statusIndex = new StatusIndex();
+
+    // слова из названий и описаний для search()
+    final TextIndex textIndex = new TextIndex();
+
+    final TaskEvents events = new TaskEvents();
+
+    // Эпики, созданные или скопированные после последнего snapshot(): их можно менять на месте.
+    // Остальные эпики могут входить в снимок, поэтому перед пересчётом подзадач копируются.
+    // null - снимков ещё не было, все эпики меняются на месте.
+    private IntObjectMap<Epic> writableEpics;
+    // последний снимок; отдаётся повторно, пока хранилище не изменилось
+    private TaskSnapshot lastSnapshot;
 
-        return time1.equals(time2) ? t1.getId() - t2.getId() : time1.compareTo(time2);
-    });
+    private final BatchSweep.Store batchStore = new BatchStore();
 
+    // Хранилище не упаковывает id в Integer, поэтому HashMap собирается заново при каждом вызове.
     @Override
     public HashMap<Integer, Task> getTasks() {
-        return tasks;
+        return tasks.toHashMap();
     }
 
     @Override
     public HashMap<Integer, Epic> getEpics() {
-        return epics;
+        return epics.toHashMap();
     }
 
     @Override
     public HashMap<Integer, Subtask> getSubtasks() {
-        return subtasks;
+        return subtasks.toHashMap();
     }
 
     @Override
     public void clearTasks() {
         tasks.values().forEach(task -> {
             history.remove(task.getId());
-            if (task.getStartTime() != null) {
-                prioritizedTasks.remove(task);
-            }
+            removeFromSchedule(task);
+            unindex(task.getId());
         });
         tasks.clear();
+        events.cleared(TaskType.TASK);
     }
 
     @Override
     public void clearEpics() {
         epics.values().forEach((epic -> {
             history.remove(epic.getId());
+            unindex(epic.getId());
         }));
         epics.clear();
         subtasks.values().forEach(subtask -> {
             history.remove(subtask.getId());
-            if (subtask.getStartTime() != null) {
-                prioritizedTasks.remove(subtask);
-            }
+            removeFromSchedule(subtask);
+            unindex(subtask.getId());
         });
         subtasks.clear();
+        events.cleared(TaskType.EPIC);
     }
 
     @Override
     public void clearSubtasks() {
+        Map<Integer, TaskEvents.EpicState> before = new HashMap<>();
+        if (events.isActive()) {
+            epics.values().forEach(epic -> before.put(epic.getId(), events.epicState(epic)));
+        }
         subtasks.values().forEach(subtask -> {
-            Epic epic = epics.get(subtask.getEpicId());
+            Epic epic = writableEpic(subtask.getEpicId());
             if (epic != null) {
                 epic.removeSubtask(subtask);
             }
             history.remove(subtask.getId());
-            if (subtask.getStartTime() != null) {
-                prioritizedTasks.remove(subtask);
-            }
+            removeFromSchedule(subtask);
+            unindex(subtask.getId());
         });
         subtasks.clear();
+        epics.values().forEach(statusIndex::put);
+        events.cleared(TaskType.SUBTASK);
+        epics.values().forEach(epic -> events.epicRecomputed(epic, before.get(epic.getId())));
     }
 
     @Override
@@ -124,9 +146,9 @@ public class InMemoryTaskManager implements TaskManager {
             tasks.put(currentId, task);
             task.setId(currentId);
             currentId++;
-            if (task.getStartTime() != null) {
-                prioritizedTasks.add(task);
-            }
+            addToSchedule(task);
+            index(task);
+            events.added(task);
         } else {
             System.out.println("Задача пересекается по времени с другими задачами");
         }
@@ -137,6 +159,9 @@ public class InMemoryTaskManager implements TaskManager {
         epics.put(currentId, epic);
         epic.setId(currentId);
         currentId++;
+        ownEpic(epic);
+        index(epic);
+        events.added(epic);
     }
 
     @Override
@@ -145,16 +170,19 @@ public class InMemoryTaskManager implements TaskManager {
             subtasks.put(currentId, subtask);
             subtask.setId(currentId);
             currentId++;
-            Epic currentEpic = epics.get(subtask.getEpicId());
+            index(subtask);
+            events.added(subtask);
+            Epic currentEpic = writableEpic(subtask.getEpicId());
             if (currentEpic != null) {
+                TaskEvents.EpicState before = events.epicState(currentEpic);
                 currentEpic.addSubtask(subtask);
+                statusIndex.put(currentEpic);
+                events.epicRecomputed(currentEpic, before);
             } else {
                 System.out.println("Эпик для подзадачи указан неверно или не существует.");
             }
 
-            if (subtask.getStartTime() != null) {
-                prioritizedTasks.add(subtask);
-            }
+            addToSchedule(subtask);
         } else {
             System.out.println("Задача пересекается по времени с другими задачами");
         }
@@ -164,13 +192,13 @@ public class InMemoryTaskManager implements TaskManager {
     public void updateTask(Task task) {
         if (!isTaskOverlapping(task)) {
             Task oldTask = tasks.get(task.getId());
-            if (oldTask != null && oldTask.getStartTime() != null) {
-                prioritizedTasks.remove(oldTask);
-            }
-            if (task.getStartTime() != null) {
-                prioritizedTasks.add(task);
+            if (oldTask != null) {
+                removeFromSchedule(oldTask);
             }
+            addToSchedule(task);
             tasks.put(task.getId(), task);
+            index(task);
+            events.updated(task);
         } else {
             System.out.println("Задача пересекается по времени с другими задачами");
         }
@@ -179,29 +207,48 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void updateEpic(Epic epic) {
         List<Subtask> epicSubtasks = epics.get(epic.getId()).getSubtasks();
-        epic.setSubtasks(epicSubtasks);
+        epic.setSubtasks(new ArrayList<>(epicSubtasks));
         epics.put(epic.getId(), epic);
+        ownEpic(epic);
+        index(epic);
+        events.updated(epic);
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
+        Subtask oldSubtask = subtasks.get(subtask.getId());
+        boolean moved = oldSubtask != null && oldSubtask.getEpicId() != subtask.getEpicId();
+        if (moved && !epics.containsKey(subtask.getEpicId())) {
+            System.out.println("Эпик для подзадачи указан неверно или не существует.");
+            return;
+        }
         if (!isTaskOverlapping(subtask)) {
-            Subtask oldSubtask = subtasks.get(subtask.getId());
-            if (oldSubtask != null && oldSubtask.getStartTime() != null) {
-                prioritizedTasks.remove(oldSubtask);
-            }
-            if (subtask.getStartTime() != null) {
-                prioritizedTasks.add(subtask);
+            if (oldSubtask != null) {
+                removeFromSchedule(oldSubtask);
             }
+            addToSchedule(subtask);
             subtasks.put(subtask.getId(), subtask);
-            Epic currentEpic = epics.get(subtask.getEpicId());
+            index(subtask);
+            events.updated(subtask);
+            if (moved) {
+                Epic oldEpic = writableEpic(oldSubtask.getEpicId());
+                if (oldEpic != null) {
+                    TaskEvents.EpicState before = events.epicState(oldEpic);
+                    oldEpic.removeSubtask(oldSubtask);
+                    statusIndex.put(oldEpic);
+                    events.epicRecomputed(oldEpic, before);
+                }
+            }
+            Epic currentEpic = writableEpic(subtask.getEpicId());
             if (currentEpic != null) {
-                List<Subtask> subtasksInEpic = currentEpic.getSubtasks();
-                subtasksInEpic.stream().filter(s -> s.getId() == subtask.getId()).findFirst().ifPresent(foundSubtask -> {
-                    int index = subtasksInEpic.indexOf(foundSubtask);
-                    subtasksInEpic.set(index, subtask);
-                    currentEpic.setSubtasks(subtasksInEpic);
-                });
+                TaskEvents.EpicState before = events.epicState(currentEpic);
+                if (moved) {
+                    currentEpic.addSubtask(subtask);
+                } else {
+                    currentEpic.replaceSubtask(subtask);
+                }
+                statusIndex.put(currentEpic);
+                events.epicRecomputed(currentEpic, before);
             } else {
                 System.out.println("Эпик для подзадачи указан неверно или не существует.");
             }
@@ -213,31 +260,49 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void deleteTask(Task task) {
-        tasks.remove(task.getId());
+        Task removed = tasks.remove(task.getId());
         history.remove(task.getId());
-        prioritizedTasks.remove(task);
+        if (removed != null) {
+            removeFromSchedule(removed);
+            unindex(removed.getId());
+            events.deleted(TaskType.TASK, removed.getId());
+        }
     }
 
     @Override
     public void deleteEpic(Epic epic) {
-        epic.getSubtasks().forEach(subtask -> {
-            subtasks.remove(subtask.getId());
-            history.remove(subtask.getId());
-            if (subtask.getStartTime() != null) {
-                prioritizedTasks.remove(subtask);
+        // после снимка хранимый эпик может оказаться копией с более свежим списком подзадач
+        Epic stored = epics.get(epic.getId());
+        (stored != null ? stored : epic).getSubtasks().forEach(subtask -> {
+            if (subtasks.remove(subtask.getId()) != null) {
+                events.deleted(TaskType.SUBTASK, subtask.getId());
             }
+            history.remove(subtask.getId());
+            removeFromSchedule(subtask);
+            unindex(subtask.getId());
         });
         epics.remove(epic.getId());
         history.remove(epic.getId());
+        unindex(epic.getId());
+        if (stored != null) {
+            events.deleted(TaskType.EPIC, epic.getId());
+        }
     }
 
     @Override
     public void deleteSubtask(Subtask subtask) {
-        Epic currentEpic = epics.get(subtask.getEpicId());
+        Epic currentEpic = writableEpic(subtask.getEpicId());
+        TaskEvents.EpicState before = events.epicState(currentEpic);
         currentEpic.removeSubtask(subtask);
-        subtasks.remove(subtask.getId());
+        statusIndex.put(currentEpic);
+        Subtask removed = subtasks.remove(subtask.getId());
         history.remove(subtask.getId());
-        prioritizedTasks.remove(subtask);
+        if (removed != null) {
+            removeFromSchedule(removed);
+            unindex(removed.getId());
+            events.deleted(TaskType.SUBTASK, removed.getId());
+        }
+        events.epicRecomputed(currentEpic, before);
     }
 
     @Override
@@ -247,18 +312,333 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        return new ArrayList<>(prioritizedTasks);
+        return schedule.toList();
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return history.getHistory();
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskEventListener listener) {
+        return events.subscribe(listener, TaskEvents.DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskEventListener listener, int capacity) {
+        return events.subscribe(listener, capacity);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, int limit) {
+        return Collections.unmodifiableList(schedule.page(from, limit));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(Task cursor, int limit) {
+        return Collections.unmodifiableList(schedule.pageAfter(cursor, limit));
+    }
+
+    @Override
+    public void forEachPrioritized(Consumer<? super Task> action) {
+        schedule.forEach(action);
+    }
+
+    // Живые представления хранилища: не копируются, менять менеджер во время обхода нельзя.
+    @Override
+    public Collection<Task> getTaskView() {
+        return Collections.unmodifiableCollection(tasks.values());
+    }
+
+    @Override
+    public Collection<Epic> getEpicView() {
+        return Collections.unmodifiableCollection(epics.values());
+    }
+
+    @Override
+    public Collection<Subtask> getSubtaskView() {
+        return Collections.unmodifiableCollection(subtasks.values());
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        return statusIndex.get(status);
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(TaskType type, Status status) {
+        return statusIndex.get(type, status);
+    }
+
+    @Override
+    public int getStatusCount(Status status) {
+        return statusIndex.count(status);
+    }
+
+    @Override
+    public int getStatusCount(TaskType type, Status status) {
+        return statusIndex.count(type, status);
     }
 
-    private boolean isOverlapping(Task a, Task b) {
-        if (a.getStartTime() != null && a.getEndTime() != null && b.getStartTime() != null && b.getEndTime() != null) {
-            return a.getStartTime().isBefore(b.getEndTime()) && b.getStartTime().isBefore(a.getEndTime());
+    @Override
+    public List<Task> search(String query, int limit) {
+        List<Task> result = new ArrayList<>();
+        for (int id : textIndex.search(query, limit)) {
+            result.add(findStored(id));
         }
-        return false;
+        return result;
+    }
+
+    public void setOverlapScanListener(IntConsumer listener) {
+        schedule.setScanListener(listener);
     }
 
     @Override
     public boolean isTaskOverlapping(Task newTask) {
-        return prioritizedTasks.stream().filter(task -> task.getId() != newTask.getId()).anyMatch(task -> isOverlapping(task, newTask));
+        return schedule.hasOverlapping(newTask);
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task task) {
+        return schedule.findOverlapping(task);
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return schedule.findStartingBetween(from, to);
+    }
+
+    // Задача активна в момент instant, если startTime <= instant < endTime.
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime instant) {
+        return schedule.findIntersecting(instant, instant.plusNanos(1));
+    }
+
+    @Override
+    public List<Task> getTasksIntersecting(LocalDateTime from, LocalDateTime to) {
+        return schedule.findIntersecting(from, to);
+    }
+
+    @Override
+    public LocalDateTime findEarliestSlot(Duration duration, LocalDateTime earliestStart) {
+        return schedule.findFreeSlot(duration, earliestStart, null, null);
+    }
+
+    @Override
+    public LocalDateTime findEarliestSlot(Duration duration, LocalDateTime earliestStart, LocalTime workdayStart, LocalTime workdayEnd) {
+        return schedule.findFreeSlot(duration, earliestStart, workdayStart, workdayEnd);
+    }
+
+    // Подзадача может ссылаться только на эпик, существовавший до вызова: id новых эпиков выдаются при применении пакета.
+    @Override
+    public List<BatchOutcome> addAll(List<? extends Task> items) {
+        BatchSweep sweep = new BatchSweep(items, batchStore);
+        sweep.add();
+        sweep.addToEpics();
+        return sweep.outcomes();
+    }
+
+    @Override
+    public List<BatchOutcome> updateAll(List<? extends Task> items) {
+        BatchSweep sweep = new BatchSweep(items, batchStore);
+        sweep.update();
+        sweep.updateEpics();
+        return sweep.outcomes();
+    }
+
+    @Override
+    public List<BatchOutcome> deleteAll(List<? extends Task> items) {
+        BatchSweep sweep = new BatchSweep(items, batchStore);
+        sweep.delete();
+        sweep.forgotten().forEach(history::remove);
+        sweep.deleteFromEpics();
+        return sweep.outcomes();
+    }
+
+    // Согласованный снимок хранилища и расписания за O(1): карты и дерево делят данные с менеджером,
+    // а последующие изменения копируют только то, что меняют. Снимок не блокирует запись и не меняется сам.
+    // Объекты задач общие со снимком - менять их вне менеджера после снимка нельзя.
+    // Пока хранилище не менялось, возвращается прежний снимок: новый начал бы новое поколение,
+    // и следующая запись снова копировала бы куски карт, узлы дерева и эпики.
+    public TaskSnapshot snapshot() {
+        if (lastSnapshot != null && lastSnapshot.isCurrent(tasks, epics, subtasks, schedule)) {
+            return lastSnapshot;
+        }
+        writableEpics = new IntObjectMap<>();
+        lastSnapshot = new TaskSnapshot(tasks.snapshot(), epics.snapshot(), subtasks.snapshot(), schedule.snapshot());
+        return lastSnapshot;
+    }
+
+    private void ownEpic(Epic epic) {
+        if (writableEpics != null) {
+            writableEpics.put(epic.getId(), epic);
+        }
+    }
+
+    // Эпик, который можно пересчитать на месте; статус копии индексирует вызывающий код.
+    private Epic writableEpic(int epicId) {
+        Epic epic = epics.get(epicId);
+        if (epic == null || writableEpics == null || writableEpics.containsKey(epicId)) {
+            return epic;
+        }
+        Epic copy = new Epic(epic);
+        epics.put(epicId, copy);
+        writableEpics.put(epicId, copy);
+        return copy;
+    }
+
+    private Task findStoredOfType(Task task) {
+        if (task instanceof Epic) {
+            return epics.get(task.getId());
+        }
+        if (task instanceof Subtask) {
+            return subtasks.get(task.getId());
+        }
+        return tasks.get(task.getId());
+    }
+
+    protected void addToSchedule(Task task) {
+        schedule.add(task);
+    }
+
+    protected void removeFromSchedule(Task task) {
+        schedule.remove(task);
+    }
+
+    protected void rebuildIndexes() {
+        statusIndex.clear();
+        textIndex.clear();
+        tasks.values().forEach(this::index);
+        epics.values().forEach(this::index);
+        subtasks.values().forEach(this::index);
+    }
+
+    // Новая или заменённая задача попадает в оба индекса; пересчитанный эпик меняет только статус.
+    private void index(Task task) {
+        statusIndex.put(task);
+        textIndex.put(task);
+    }
+
+    private void unindex(int id) {
+        statusIndex.remove(id);
+        textIndex.remove(id);
+    }
+
+    protected Task findStored(int id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            task = epics.get(id);
+        }
+        return task != null ? task : subtasks.get(id);
+    }
+
+    protected void rebuildSchedule() {
+        List<Task> timed = new ArrayList<>(tasks.size() + subtasks.size());
+        timed.addAll(tasks.values());
+        timed.addAll(subtasks.values());
+        schedule.rebuild(timed);
+    }
+
+    // Доступ пакетных операций BatchSweep к хранилищу менеджера.
+    private class BatchStore implements BatchSweep.Store {
+        @Override
+        public Task findStored(Task task) {
+            return findStoredOfType(task);
+        }
+
+        @Override
+        public boolean hasEpic(int epicId) {
+            return epics.containsKey(epicId);
+        }
+
+        @Override
+        public boolean isEpicGuarded(int epicId) {
+            return true;
+        }
+
+        @Override
+        public int nextId() {
+            return currentId++;
+        }
+
+        @Override
+        public Task put(Task task) {
+            if (task instanceof Epic) {
+                Epic previous = epics.put(task.getId(), (Epic) task);
+                ownEpic((Epic) task);
+                return previous;
+            }
+            if (task instanceof Subtask) {
+                return subtasks.put(task.getId(), (Subtask) task);
+            }
+            return tasks.put(task.getId(), task);
+        }
+
+        @Override
+        public Task remove(Task task) {
+            if (task instanceof Epic) {
+                return epics.remove(task.getId());
+            }
+            if (task instanceof Subtask) {
+                return subtasks.remove(task.getId());
+            }
+            return tasks.remove(task.getId());
+        }
+
+        @Override
+        public Epic getEpic(int epicId) {
+            return epics.get(epicId);
+        }
+
+        @Override
+        public Epic epicForUpdate(int epicId) {
+            return writableEpic(epicId);
+        }
+
+        @Override
+        public boolean overlaps(Task task) {
+            return schedule.hasOverlapping(task);
+        }
+
+        // если пакет больше расписания, одно построение дерева дешевле вставок по одной
+        @Override
+        public void addToSchedule(List<Task> timed) {
+            if (timed.size() > schedule.size()) {
+                rebuildSchedule();
+            } else {
+                timed.forEach(InMemoryTaskManager.this::addToSchedule);
+            }
+        }
+
+        @Override
+        public void addToSchedule(Task task) {
+            InMemoryTaskManager.this.addToSchedule(task);
+        }
+
+        @Override
+        public void removeFromSchedule(Task task) {
+            InMemoryTaskManager.this.removeFromSchedule(task);
+        }
+
+        @Override
+        public void index(Task task) {
+            InMemoryTaskManager.this.index(task);
+        }
+
+        @Override
+        public void reindexStatus(Task task) {
+            statusIndex.put(task);
+        }
+
+        @Override
+        public void unindex(int id) {
+            InMemoryTaskManager.this.unindex(id);
+        }
+
+        @Override
+        public TaskEvents events() {
+            return events;
+        }
     }
 }
@@ -0,0 +1,49 @@
+package service;
+
+import model.Task;
+
+import java.util.List;
+
+public class InstrumentedHistoryManager implements HistoryManager {
+    private final HistoryManager delegate;
+    private final LatencyHistogram addLatency;
+    private final LatencyHistogram removeLatency;
+    private final LatencyHistogram getHistoryLatency;
+
+    public InstrumentedHistoryManager(HistoryManager delegate, TaskMetrics metrics) {
+        this.delegate = delegate;
+        this.addLatency = metrics.histogram("history.add.nanos");
+        this.removeLatency = metrics.histogram("history.remove.nanos");
+        this.getHistoryLatency = metrics.histogram("history.getHistory.nanos");
+    }
+
+    @Override
+    public void add(Task task) {
+        long start = System.nanoTime();
+        try {
+            delegate.add(task);
+        } finally {
+            addLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.remove(id);
+        } finally {
+            removeLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getHistory();
+        } finally {
+            getHistoryLatency.record(System.nanoTime() - start);
+        }
+    }
+}
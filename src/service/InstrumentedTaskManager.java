@@ -0,0 +1,562 @@
+package service;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Обёртка над TaskManager, которая замеряет время каждого вызова.
+// Если внутри InMemoryTaskManager или ConcurrentTaskManager, дополнительно замеряется история просмотров
+// и пишется длина обхода при проверке пересечений; если FileBackedTaskManager - ещё размер и время
+// каждой записи на диск.
+// Гистограммы создаются один раз в конструкторе, запись - это nanoTime и несколько атомарных инкрементов.
+public class InstrumentedTaskManager implements TaskManager {
+    private final TaskManager delegate;
+    private final TaskMetrics metrics;
+    private final LatencyHistogram getTasksLatency;
+    private final LatencyHistogram getEpicsLatency;
+    private final LatencyHistogram getSubtasksLatency;
+    private final LatencyHistogram clearTasksLatency;
+    private final LatencyHistogram clearEpicsLatency;
+    private final LatencyHistogram clearSubtasksLatency;
+    private final LatencyHistogram getTaskByIdLatency;
+    private final LatencyHistogram getEpicByIdLatency;
+    private final LatencyHistogram getSubtaskByIdLatency;
+    private final LatencyHistogram addTaskLatency;
+    private final LatencyHistogram addEpicLatency;
+    private final LatencyHistogram addSubtaskLatency;
+    private final LatencyHistogram updateTaskLatency;
+    private final LatencyHistogram updateEpicLatency;
+    private final LatencyHistogram updateSubtaskLatency;
+    private final LatencyHistogram deleteTaskLatency;
+    private final LatencyHistogram deleteEpicLatency;
+    private final LatencyHistogram deleteSubtaskLatency;
+    private final LatencyHistogram getSubtasksInEpicLatency;
+    private final LatencyHistogram getPrioritizedTasksLatency;
+    private final LatencyHistogram isTaskOverlappingLatency;
+    private final LatencyHistogram getOverlappingTasksLatency;
+    private final LatencyHistogram addAllLatency;
+    private final LatencyHistogram updateAllLatency;
+    private final LatencyHistogram deleteAllLatency;
+    private final LatencyHistogram getPrioritizedTasksPageLatency;
+    private final LatencyHistogram getPrioritizedTasksAfterLatency;
+    private final LatencyHistogram forEachPrioritizedLatency;
+    private final LatencyHistogram getTaskViewLatency;
+    private final LatencyHistogram getEpicViewLatency;
+    private final LatencyHistogram getSubtaskViewLatency;
+    private final LatencyHistogram getTasksStartingBetweenLatency;
+    private final LatencyHistogram getTasksActiveAtLatency;
+    private final LatencyHistogram getTasksIntersectingLatency;
+    private final LatencyHistogram findEarliestSlotLatency;
+    private final LatencyHistogram findEarliestSlotInWorkdayLatency;
+    private final LatencyHistogram getTasksByStatusLatency;
+    private final LatencyHistogram getTasksByTypeAndStatusLatency;
+    private final LatencyHistogram getStatusCountLatency;
+    private final LatencyHistogram getTypeAndStatusCountLatency;
+    private final LatencyHistogram searchLatency;
+
+    public InstrumentedTaskManager(TaskManager delegate, TaskMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.getTasksLatency = metrics.histogram("taskManager.getTasks.nanos");
+        this.getEpicsLatency = metrics.histogram("taskManager.getEpics.nanos");
+        this.getSubtasksLatency = metrics.histogram("taskManager.getSubtasks.nanos");
+        this.clearTasksLatency = metrics.histogram("taskManager.clearTasks.nanos");
+        this.clearEpicsLatency = metrics.histogram("taskManager.clearEpics.nanos");
+        this.clearSubtasksLatency = metrics.histogram("taskManager.clearSubtasks.nanos");
+        this.getTaskByIdLatency = metrics.histogram("taskManager.getTaskById.nanos");
+        this.getEpicByIdLatency = metrics.histogram("taskManager.getEpicById.nanos");
+        this.getSubtaskByIdLatency = metrics.histogram("taskManager.getSubtaskById.nanos");
+        this.addTaskLatency = metrics.histogram("taskManager.addTask.nanos");
+        this.addEpicLatency = metrics.histogram("taskManager.addEpic.nanos");
+        this.addSubtaskLatency = metrics.histogram("taskManager.addSubtask.nanos");
+        this.updateTaskLatency = metrics.histogram("taskManager.updateTask.nanos");
+        this.updateEpicLatency = metrics.histogram("taskManager.updateEpic.nanos");
+        this.updateSubtaskLatency = metrics.histogram("taskManager.updateSubtask.nanos");
+        this.deleteTaskLatency = metrics.histogram("taskManager.deleteTask.nanos");
+        this.deleteEpicLatency = metrics.histogram("taskManager.deleteEpic.nanos");
+        this.deleteSubtaskLatency = metrics.histogram("taskManager.deleteSubtask.nanos");
+        this.getSubtasksInEpicLatency = metrics.histogram("taskManager.getSubtasksInEpic.nanos");
+        this.getPrioritizedTasksLatency = metrics.histogram("taskManager.getPrioritizedTasks.nanos");
+        this.isTaskOverlappingLatency = metrics.histogram("taskManager.isTaskOverlapping.nanos");
+        this.getOverlappingTasksLatency = metrics.histogram("taskManager.getOverlappingTasks.nanos");
+        this.addAllLatency = metrics.histogram("taskManager.addAll.nanos");
+        this.updateAllLatency = metrics.histogram("taskManager.updateAll.nanos");
+        this.deleteAllLatency = metrics.histogram("taskManager.deleteAll.nanos");
+        this.getPrioritizedTasksPageLatency = metrics.histogram("taskManager.getPrioritizedTasksPage.nanos");
+        this.getPrioritizedTasksAfterLatency = metrics.histogram("taskManager.getPrioritizedTasksAfter.nanos");
+        this.forEachPrioritizedLatency = metrics.histogram("taskManager.forEachPrioritized.nanos");
+        this.getTaskViewLatency = metrics.histogram("taskManager.getTaskView.nanos");
+        this.getEpicViewLatency = metrics.histogram("taskManager.getEpicView.nanos");
+        this.getSubtaskViewLatency = metrics.histogram("taskManager.getSubtaskView.nanos");
+        this.getTasksStartingBetweenLatency = metrics.histogram("taskManager.getTasksStartingBetween.nanos");
+        this.getTasksActiveAtLatency = metrics.histogram("taskManager.getTasksActiveAt.nanos");
+        this.getTasksIntersectingLatency = metrics.histogram("taskManager.getTasksIntersecting.nanos");
+        this.findEarliestSlotLatency = metrics.histogram("taskManager.findEarliestSlot.nanos");
+        this.findEarliestSlotInWorkdayLatency = metrics.histogram("taskManager.findEarliestSlotInWorkday.nanos");
+        this.getTasksByStatusLatency = metrics.histogram("taskManager.getTasksByStatus.nanos");
+        this.getTasksByTypeAndStatusLatency = metrics.histogram("taskManager.getTasksByTypeAndStatus.nanos");
+        this.getStatusCountLatency = metrics.histogram("taskManager.getStatusCount.nanos");
+        this.getTypeAndStatusCountLatency = metrics.histogram("taskManager.getTypeAndStatusCount.nanos");
+        this.searchLatency = metrics.histogram("taskManager.search.nanos");
+
+        LatencyHistogram scanLength = metrics.histogram("overlapCheck.scanLength");
+        if (delegate instanceof InMemoryTaskManager) {
+            InMemoryTaskManager inMemory = (InMemoryTaskManager) delegate;
+            inMemory.setOverlapScanListener(scanLength::record);
+            inMemory.history = new InstrumentedHistoryManager(inMemory.history, metrics);
+        } else if (delegate instanceof ConcurrentTaskManager) {
+            ConcurrentTaskManager concurrent = (ConcurrentTaskManager) delegate;
+            concurrent.setOverlapScanListener(scanLength::record);
+            concurrent.history = new InstrumentedHistoryManager(concurrent.history, metrics);
+        }
+        if (delegate instanceof FileBackedTaskManager) {
+            ((FileBackedTaskManager) delegate).setStorageListener((target, bytes, nanos) -> {
+                metrics.record("storage." + target + ".bytes", bytes);
+                metrics.record("storage." + target + ".nanos", nanos);
+            });
+        }
+    }
+
+    public TaskManager getDelegate() {
+        return delegate;
+    }
+
+    public TaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public HashMap<Integer, Task> getTasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTasks();
+        } finally {
+            getTasksLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public HashMap<Integer, Epic> getEpics() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getEpics();
+        } finally {
+            getEpicsLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public HashMap<Integer, Subtask> getSubtasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getSubtasks();
+        } finally {
+            getSubtasksLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void clearTasks() {
+        long start = System.nanoTime();
+        try {
+            delegate.clearTasks();
+        } finally {
+            clearTasksLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void clearEpics() {
+        long start = System.nanoTime();
+        try {
+            delegate.clearEpics();
+        } finally {
+            clearEpicsLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void clearSubtasks() {
+        long start = System.nanoTime();
+        try {
+            delegate.clearSubtasks();
+        } finally {
+            clearSubtasksLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTaskById(id);
+        } finally {
+            getTaskByIdLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getEpicById(id);
+        } finally {
+            getEpicByIdLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getSubtaskById(id);
+        } finally {
+            getSubtaskByIdLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addTask(Task task) {
+        long start = System.nanoTime();
+        try {
+            delegate.addTask(task);
+        } finally {
+            addTaskLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        long start = System.nanoTime();
+        try {
+            delegate.addEpic(epic);
+        } finally {
+            addEpicLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        long start = System.nanoTime();
+        try {
+            delegate.addSubtask(subtask);
+        } finally {
+            addSubtaskLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        long start = System.nanoTime();
+        try {
+            delegate.updateTask(task);
+        } finally {
+            updateTaskLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        long start = System.nanoTime();
+        try {
+            delegate.updateEpic(epic);
+        } finally {
+            updateEpicLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        long start = System.nanoTime();
+        try {
+            delegate.updateSubtask(subtask);
+        } finally {
+            updateSubtaskLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteTask(Task task) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteTask(task);
+        } finally {
+            deleteTaskLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteEpic(Epic epic) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteEpic(epic);
+        } finally {
+            deleteEpicLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteSubtask(Subtask subtask) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteSubtask(subtask);
+        } finally {
+            deleteSubtaskLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksInEpic(Epic epic) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getSubtasksInEpic(epic);
+        } finally {
+            getSubtasksInEpicLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getPrioritizedTasks();
+        } finally {
+            getPrioritizedTasksLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return delegate.getHistory();
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskEventListener listener) {
+        return delegate.subscribe(listener);
+    }
+
+    @Override
+    public TaskSubscription subscribe(TaskEventListener listener, int capacity) {
+        return delegate.subscribe(listener, capacity);
+    }
+
+    @Override
+    public boolean isTaskOverlapping(Task task) {
+        long start = System.nanoTime();
+        try {
+            return delegate.isTaskOverlapping(task);
+        } finally {
+            isTaskOverlappingLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task task) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getOverlappingTasks(task);
+        } finally {
+            getOverlappingTasksLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<BatchOutcome> addAll(List<? extends Task> items) {
+        long start = System.nanoTime();
+        try {
+            return delegate.addAll(items);
+        } finally {
+            addAllLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<BatchOutcome> updateAll(List<? extends Task> items) {
+        long start = System.nanoTime();
+        try {
+            return delegate.updateAll(items);
+        } finally {
+            updateAllLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<BatchOutcome> deleteAll(List<? extends Task> items) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deleteAll(items);
+        } finally {
+            deleteAllLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getPrioritizedTasks(from, limit);
+        } finally {
+            getPrioritizedTasksPageLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(Task cursor, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getPrioritizedTasksAfter(cursor, limit);
+        } finally {
+            getPrioritizedTasksAfterLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void forEachPrioritized(Consumer<? super Task> action) {
+        long start = System.nanoTime();
+        try {
+            delegate.forEachPrioritized(action);
+        } finally {
+            forEachPrioritizedLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Collection<Task> getTaskView() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTaskView();
+        } finally {
+            getTaskViewLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Collection<Epic> getEpicView() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getEpicView();
+        } finally {
+            getEpicViewLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Collection<Subtask> getSubtaskView() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getSubtaskView();
+        } finally {
+            getSubtaskViewLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTasksStartingBetween(from, to);
+        } finally {
+            getTasksStartingBetweenLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime instant) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTasksActiveAt(instant);
+        } finally {
+            getTasksActiveAtLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasksIntersecting(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTasksIntersecting(from, to);
+        } finally {
+            getTasksIntersectingLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public LocalDateTime findEarliestSlot(Duration duration, LocalDateTime earliestStart) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findEarliestSlot(duration, earliestStart);
+        } finally {
+            findEarliestSlotLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public LocalDateTime findEarliestSlot(Duration duration, LocalDateTime earliestStart, LocalTime workdayStart, LocalTime workdayEnd) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findEarliestSlot(duration, earliestStart, workdayStart, workdayEnd);
+        } finally {
+            findEarliestSlotInWorkdayLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTasksByStatus(status);
+        } finally {
+            getTasksByStatusLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(TaskType type, Status status) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTasksByStatus(type, status);
+        } finally {
+            getTasksByTypeAndStatusLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int getStatusCount(Status status) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getStatusCount(status);
+        } finally {
+            getStatusCountLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int getStatusCount(TaskType type, Status status) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getStatusCount(type, status);
+        } finally {
+            getTypeAndStatusCountLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.search(query, limit);
+        } finally {
+            searchLatency.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package service;
+
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Интервальное дерево (AVL), упорядоченное по startTime и id.
+// В каждом узле хранится максимальный endTime поддерева, поэтому поиск пересечений занимает O(log n + k).
+// snapshot() за O(1) отдаёт неизменяемое дерево с тем же корнем и начинает новое поколение:
+// узлы старших поколений больше не меняются, запись копирует только узлы на своём пути (O(log n)).
+public class IntervalIndex {
+    private static final int NO_ID = Integer.MIN_VALUE;
+
+    private IntervalNode root;
+    private int size;
+    private int generation;
+    private boolean frozen;
+    private int visited;
+    private IntConsumer scanListener;
+
+    private static class IntervalNode {
+        final Task task;
+        final LocalDateTime start;
+        final LocalDateTime end;
+        // поколение дерева, в котором узел создан; менять на месте можно только узлы текущего поколения
+        final int generation;
+        LocalDateTime maxEnd;
+        IntervalNode left;
+        IntervalNode right;
+        int height = 1;
+
+        IntervalNode(Task task, int generation) {
+            this.task = task;
+            this.start = task.getStartTime();
+            this.end = task.getEndTime();
+            this.generation = generation;
+            this.maxEnd = end;
+        }
+
+        IntervalNode(IntervalNode other, int generation) {
+            this.task = other.task;
+            this.start = other.start;
+            this.end = other.end;
+            this.generation = generation;
+            this.maxEnd = other.maxEnd;
+            this.left = other.left;
+            this.right = other.right;
+            this.height = other.height;
+        }
+    }
+
+    public IntervalIndex snapshot() {
+        if (frozen) {
+            return this;
+        }
+        IntervalIndex snapshot = new IntervalIndex();
+        snapshot.root = root;
+        snapshot.size = size;
+        snapshot.frozen = true;
+        generation++;
+        return snapshot;
+    }
+
+    // true, если после snapshot дерево не менялось: любая вставка или удаление копирует путь от корня.
+    public boolean isUnchangedSince(IntervalIndex snapshot) {
+        return snapshot.root == root && snapshot.size == size;
+    }
+
+    // Получает число узлов, просмотренных при каждой проверке пересечений.
+    public void setScanListener(IntConsumer scanListener) {
+        this.scanListener = scanListener;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        checkNotFrozen();
+        root = null;
+        size = 0;
+    }
+
+    // Строит сбалансированное дерево за O(n) после одной сортировки вместо n вставок.
+    public void rebuild(Collection<? extends Task> all) {
+        checkNotFrozen();
+        List<Task> sorted = new ArrayList<>(all.size());
+        for (Task task : all) {
+            if (task.getStartTime() != null) {
+                sorted.add(task);
+            }
+        }
+        sorted.sort(Comparator.comparing(Task::getStartTime).thenComparingInt(Task::getId));
+        root = build(sorted, 0, sorted.size() - 1);
+        size = sorted.size();
+    }
+
+    public void add(Task task) {
+        if (task.getStartTime() == null) {
+            return;
+        }
+        checkNotFrozen();
+        root = insert(root, task);
+    }
+
+    public boolean remove(Task task) {
+        if (task.getStartTime() == null) {
+            return false;
+        }
+        checkNotFrozen();
+        int sizeBefore = size;
+        root = delete(root, task.getStartTime(), task.getId());
+        return size < sizeBefore;
+    }
+
+    public boolean hasOverlapping(Task task) {
+        if (task.getStartTime() == null || task.getEndTime() == null) {
+            return false;
+        }
+        visited = 0;
+        boolean found = findOverlapping(root, task.getStartTime(), task.getEndTime(), task.getId(), new ArrayList<>(), 1) > 0;
+        reportScan();
+        return found;
+    }
+
+    public List<Task> findOverlapping(Task task) {
+        List<Task> result = new ArrayList<>();
+        if (task.getStartTime() != null && task.getEndTime() != null) {
+            visited = 0;
+            findOverlapping(root, task.getStartTime(), task.getEndTime(), task.getId(), result, Integer.MAX_VALUE);
+            reportScan();
+        }
+        return result;
+    }
+
+    // Задачи, пересекающиеся с окном [from, to). Задачи без длительности в окна не попадают.
+    public List<Task> findIntersecting(LocalDateTime from, LocalDateTime to) {
+        requireWindow(from, to);
+        List<Task> result = new ArrayList<>();
+        findOverlapping(root, from, to, NO_ID, result, Integer.MAX_VALUE);
+        return result;
+    }
+
+    // Задачи, у которых startTime в [from, to), по порядку.
+    public List<Task> findStartingBetween(LocalDateTime from, LocalDateTime to) {
+        requireWindow(from, to);
+        List<Task> result = new ArrayList<>();
+        collectStarting(root, from, to, result);
+        return result;
+    }
+
+    // Самое раннее начало не раньше earliest, с которого duration свободна от задач.
+    // Если задан рабочий день [workdayStart, workdayEnd), слот целиком должен в него помещаться.
+    // Найденная помеха переносит кандидата сразу за конец самой поздней из мешающих задач,
+    // поэтому каждая задача просматривается не больше одного раза: O(m log n), где m - число пропущенных задач.
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime earliest, LocalTime workdayStart, LocalTime workdayEnd) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Длительность слота должна быть положительной: " + duration);
+        }
+        boolean workday = workdayStart != null && workdayEnd != null;
+        if (workday && (!workdayStart.isBefore(workdayEnd)
+                || Duration.between(workdayStart, workdayEnd).compareTo(duration) < 0)) {
+            throw new IllegalArgumentException("Слот не помещается в рабочий день " + workdayStart + "-" + workdayEnd);
+        }
+        LocalDateTime candidate = earliest;
+        while (true) {
+            if (workday) {
+                candidate = alignToWorkday(candidate, duration, workdayStart, workdayEnd);
+            }
+            List<Task> blocking = findIntersecting(candidate, candidate.plus(duration));
+            if (blocking.isEmpty()) {
+                return candidate;
+            }
+            for (Task task : blocking) {
+                if (task.getEndTime().isAfter(candidate)) {
+                    candidate = task.getEndTime();
+                }
+            }
+        }
+    }
+
+    private static LocalDateTime alignToWorkday(LocalDateTime candidate, Duration duration, LocalTime workdayStart, LocalTime workdayEnd) {
+        if (candidate.toLocalTime().isBefore(workdayStart)) {
+            return candidate.toLocalDate().atTime(workdayStart);
+        }
+        LocalDateTime dayEnd = candidate.toLocalDate().atTime(workdayEnd);
+        if (candidate.plus(duration).isAfter(dayEnd)) {
+            return candidate.toLocalDate().plusDays(1).atTime(workdayStart);
+        }
+        return candidate;
+    }
+
+    static void requireWindow(LocalDateTime from, LocalDateTime to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало окна позже его конца: " + from + " > " + to);
+        }
+    }
+
+    private void reportScan() {
+        if (scanListener != null) {
+            scanListener.accept(visited);
+        }
+    }
+
+    public List<Task> toList() {
+        List<Task> result = new ArrayList<>(size);
+        collect(root, result);
+        return result;
+    }
+
+    // Обход по порядку без копирования всего дерева.
+    public void forEach(Consumer<? super Task> action) {
+        forEach(root, action);
+    }
+
+    // До limit задач начиная с startTime >= from, по порядку; спуск к границе занимает O(log n).
+    public List<Task> page(LocalDateTime from, int limit) {
+        List<Task> result = new ArrayList<>(Math.min(limit, size));
+        collectFrom(root, from, Integer.MIN_VALUE, true, result, limit);
+        return result;
+    }
+
+    // До limit задач строго после cursor в порядке (startTime, id) - следующая страница после последней задачи предыдущей.
+    public List<Task> pageAfter(Task cursor, int limit) {
+        if (cursor.getStartTime() == null) {
+            throw new IllegalArgumentException("У задачи-курсора не задано время начала");
+        }
+        List<Task> result = new ArrayList<>(Math.min(limit, size));
+        collectFrom(root, cursor.getStartTime(), cursor.getId(), false, result, limit);
+        return result;
+    }
+
+    private int findOverlapping(IntervalNode node, LocalDateTime from, LocalDateTime to, int excludeId,
+                                List<Task> result, int limit) {
+        if (node == null || result.size() >= limit || node.maxEnd == null || !from.isBefore(node.maxEnd)) {
+            return result.size();
+        }
+        visited++;
+        findOverlapping(node.left, from, to, excludeId, result, limit);
+        if (result.size() >= limit || !node.start.isBefore(to)) {
+            // у всех узлов правого поддерева начало не раньше node.start, пересечений там нет
+            return result.size();
+        }
+        if (node.end != null && from.isBefore(node.end) && node.task.getId() != excludeId) {
+            result.add(node.task);
+        }
+        findOverlapping(node.right, from, to, excludeId, result, limit);
+        return result.size();
+    }
+
+    private void collectStarting(IntervalNode node, LocalDateTime from, LocalDateTime to, List<Task> result) {
+        if (node == null) {
+            return;
+        }
+        boolean afterFrom = !node.start.isBefore(from);
+        boolean beforeTo = node.start.isBefore(to);
+        if (afterFrom) {
+            collectStarting(node.left, from, to, result);
+        }
+        if (afterFrom && beforeTo) {
+            result.add(node.task);
+        }
+        if (beforeTo) {
+            collectStarting(node.right, from, to, result);
+        }
+    }
+
+    private IntervalNode build(List<Task> sorted, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        IntervalNode node = new IntervalNode(sorted.get(middle), generation);
+        node.left = build(sorted, from, middle - 1);
+        node.right = build(sorted, middle + 1, to);
+        update(node);
+        return node;
+    }
+
+    private void forEach(IntervalNode node, Consumer<? super Task> action) {
+        if (node == null) {
+            return;
+        }
+        forEach(node.left, action);
+        action.accept(node.task);
+        forEach(node.right, action);
+    }
+
+    private void collectFrom(IntervalNode node, LocalDateTime start, int id, boolean inclusive, List<Task> result, int limit) {
+        if (node == null || result.size() >= limit) {
+            return;
+        }
+        int cmp = compare(node.start, node.task.getId(), start, id);
+        if (cmp > 0 || cmp == 0 && inclusive) {
+            collectFrom(node.left, start, id, inclusive, result, limit);
+            if (result.size() < limit) {
+                result.add(node.task);
+            }
+        }
+        collectFrom(node.right, start, id, inclusive, result, limit);
+    }
+
+    private void collect(IntervalNode node, List<Task> result) {
+        if (node == null) {
+            return;
+        }
+        collect(node.left, result);
+        result.add(node.task);
+        collect(node.right, result);
+    }
+
+    private static int compare(LocalDateTime start1, int id1, LocalDateTime start2, int id2) {
+        int byStart = start1.compareTo(start2);
+        return byStart != 0 ? byStart : Integer.compare(id1, id2);
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Снимок расписания нельзя изменять");
+        }
+    }
+
+    // Узел, который можно менять на месте: свой или копия узла, принадлежащего снимку.
+    private IntervalNode mutable(IntervalNode node) {
+        return node.generation == generation ? node : new IntervalNode(node, generation);
+    }
+
+    private IntervalNode insert(IntervalNode node, Task task) {
+        if (node == null) {
+            size++;
+            return new IntervalNode(task, generation);
+        }
+        int cmp = compare(task.getStartTime(), task.getId(), node.start, node.task.getId());
+        if (cmp == 0) {
+            return node;
+        }
+        node = mutable(node);
+        if (cmp < 0) {
+            node.left = insert(node.left, task);
+        } else {
+            node.right = insert(node.right, task);
+        }
+        return balance(node);
+    }
+
+    private IntervalNode delete(IntervalNode node, LocalDateTime start, int id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node.start, node.task.getId());
+        if (cmp == 0) {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            IntervalNode successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            IntervalNode replacement = new IntervalNode(successor.task, generation);
+            replacement.right = removeMin(node.right);
+            replacement.left = node.left;
+            return balance(replacement);
+        }
+        IntervalNode child = cmp < 0 ? delete(node.left, start, id) : delete(node.right, start, id);
+        if (child == (cmp < 0 ? node.left : node.right)) {
+            // задачи в поддереве не было - путь не копируется
+            return node;
+        }
+        node = mutable(node);
+        if (cmp < 0) {
+            node.left = child;
+        } else {
+            node.right = child;
+        }
+        return balance(node);
+    }
+
+    private IntervalNode removeMin(IntervalNode node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node = mutable(node);
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(IntervalNode node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static void update(IntervalNode node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = later(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = later(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private IntervalNode rotateRight(IntervalNode node) {
+        node = mutable(node);
+        IntervalNode left = mutable(node.left);
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private IntervalNode rotateLeft(IntervalNode node) {
+        node = mutable(node);
+        IntervalNode right = mutable(node.right);
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    // node должен принадлежать текущему поколению
+    private IntervalNode balance(IntervalNode node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+}
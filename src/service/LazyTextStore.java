@@ -0,0 +1,222 @@
+package service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Строки из таблицы двоичного снимка, оставленные на диске: в памяти только смещение и длина каждой
+// и небольшой LRU-кэш последних прочитанных. Задача ссылается на строку по номеру через ref().
+// При перезаписи снимка в новый файл копируются байты только тех строк, на которые ещё ссылаются
+// задачи снимка (copyTo), и номера этих строк остаются действительными. Остальные строки из файла
+// уходят; если на строку есть ссылка у задачи вне менеджера, текст один раз читается и остаётся в ней.
+final class LazyTextStore implements AutoCloseable {
+    private final Path path;
+    // открывается заново после каждой перезаписи: при атомарной замене у файла новый inode
+    private FileChannel channel;
+    private final Map<Integer, String> cache;
+    // смещения меняются только под fileLock.writeLock() вместе с содержимым файла
+    private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+    // смещение -1 - строки в файле больше нет
+    private long[] offsets = new long[0];
+    private int[] lengths = new int[0];
+    private Ref[] refs = new Ref[0];
+    // все строки в памяти на время загрузки или записи снимка, иначе null
+    private volatile String[] preloaded;
+
+    LazyTextStore(Path path, int cacheSize) {
+        this.path = path;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения файла.", e);
+        }
+    }
+
+    void bind(long[] offsets, int[] lengths) {
+        fileLock.writeLock().lock();
+        try {
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.refs = new Ref[offsets.length];
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    void preload(String[] values) {
+        preloaded = values;
+    }
+
+    int size() {
+        fileLock.readLock().lock();
+        try {
+            return offsets.length;
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    // Одна ссылка на строку для всех задач с этим описанием.
+    Supplier<String> ref(int textId) {
+        fileLock.writeLock().lock();
+        try {
+            if (refs[textId] == null) {
+                refs[textId] = new Ref(this, textId);
+            }
+            return refs[textId];
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    // Номер строки, на которую ссылается описание задачи, или -1, если описание не из этого хранилища
+    // или его строка уже ушла из файла.
+    int textIdOf(Supplier<String> description) {
+        if (!(description instanceof Ref)) {
+            return -1;
+        }
+        Ref ref = (Ref) description;
+        return ref.store == this && ref.value == null ? ref.textId : -1;
+    }
+
+    private String read(Ref ref) {
+        String[] values = preloaded;
+        if (values != null) {
+            return values[ref.textId];
+        }
+        synchronized (cache) {
+            String cached = cache.get(ref.textId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String value;
+        fileLock.readLock().lock();
+        try {
+            // строку могли убрать из файла, пока поток ждал блокировку
+            value = ref.value != null ? ref.value : load(ref.textId);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+        synchronized (cache) {
+            cache.put(ref.textId, value);
+        }
+        return value;
+    }
+
+    // Дописывает в out строки textIds (по возрастанию номера) в формате таблицы строк снимка:
+    // длина и байты UTF-8 копируются из файла без разбора, соседние в файле строки - одним чтением.
+    // Смещение байтов каждой строки в out записывается в newOffsets[textId].
+    void copyTo(int[] textIds, DataOutputStream out, long[] newOffsets) throws IOException {
+        fileLock.readLock().lock();
+        try {
+            int i = 0;
+            while (i < textIds.length) {
+                long from = offsets[textIds[i]] - Integer.BYTES;
+                int last = i;
+                while (last + 1 < textIds.length
+                        && offsets[textIds[last + 1]] - Integer.BYTES == offsets[textIds[last]] + lengths[textIds[last]]) {
+                    last++;
+                }
+                long to = offsets[textIds[last]] + lengths[textIds[last]];
+                long base = out.size() - from;
+                for (int k = i; k <= last; k++) {
+                    newOffsets[textIds[k]] = base + offsets[textIds[k]];
+                }
+                out.write(readRange(from, Math.toIntExact(to - from)));
+                i = last + 1;
+            }
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    // Перезаписывает файл и переводит строки на их место в новом снимке; чтение на это время ждёт.
+    // Строки со смещением -1 в newOffsets из файла уходят.
+    void rewrite(byte[] snapshot, long[] newOffsets, Durability durability) throws IOException {
+        fileLock.writeLock().lock();
+        try {
+            for (int textId = 0; textId < offsets.length; textId++) {
+                if (newOffsets[textId] < 0 && offsets[textId] >= 0 && refs[textId] != null) {
+                    // на строку ссылается задача, которой уже нет в менеджере: текст переходит в саму ссылку
+                    refs[textId].value = load(textId);
+                    refs[textId] = null;
+                }
+            }
+            DurableFiles.write(path, snapshot, durability);
+            FileChannel previous = channel;
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            previous.close();
+            offsets = newOffsets;
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+        synchronized (cache) {
+            cache.keySet().removeIf(textId -> newOffsets[textId] < 0);
+        }
+    }
+
+    @Override
+    public void close() {
+        fileLock.writeLock().lock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время закрытия файла.", e);
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    // вызывается под fileLock
+    private String load(int textId) {
+        return new String(readRange(offsets[textId], lengths[textId]), StandardCharsets.UTF_8);
+    }
+
+    // вызывается под fileLock
+    private byte[] readRange(long position, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new ManagerSaveException("Строка снимка выходит за конец файла: " + position, null);
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения файла.", e);
+        }
+        return buffer.array();
+    }
+
+    private static final class Ref implements Supplier<String> {
+        final LazyTextStore store;
+        final int textId;
+        // текст строки, убранной из файла, иначе null; меняется под fileLock.writeLock()
+        volatile String value;
+
+        Ref(LazyTextStore store, int textId) {
+            this.store = store;
+            this.textId = textId;
+        }
+
+        @Override
+        public String get() {
+            String detached = value;
+            return detached != null ? detached : store.read(this);
+        }
+    }
+}
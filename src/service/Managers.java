@@ -5,8 +5,32 @@ public class Managers {
         return new InMemoryTaskManager();
     }
 
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    public static InstrumentedTaskManager getInstrumented(TaskManager delegate, TaskMetrics metrics) {
+        return new InstrumentedTaskManager(delegate, metrics);
+    }
+
+    public static InstrumentedTaskManager getInstrumented() {
+        return getInstrumented(getDefault(), new TaskMetrics());
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
+
+    public static HistoryManager getConcurrentHistory() {
+        return new BufferedHistoryManager();
+    }
+
+    public static HistoryManager getConcurrentHistory(int maxSize) {
+        return new BufferedHistoryManager(maxSize);
+    }
+
+    public static HistoryManager getInstrumentedHistory(HistoryManager delegate, TaskMetrics metrics) {
+        return new InstrumentedHistoryManager(delegate, metrics);
+    }
 }
 
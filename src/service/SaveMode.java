@@ -0,0 +1,8 @@
+package service;
+
+public enum SaveMode {
+    SNAPSHOT,
+    JOURNAL,
+    // сегменты по диапазонам id (TaskPartitions): переписываются только изменённые
+    PARTITIONED
+}
@@ -0,0 +1,85 @@
+package service;
+
+import model.Status;
+import model.Task;
+import model.TaskType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Вторичный индекс задач по типу и статусу: по корзине на каждую пару (TaskType, Status).
+// Для каждого id помнится корзина, в которой лежит задача, поэтому put() переносит её,
+// даже если статус объекта уже изменился на месте (как у эпика после пересчёта по подзадачам).
+// Корзины - LinkedHashMap, чтобы выборка шла за O(k), а не по всей ёмкости таблицы.
+// Не потокобезопасен.
+public class StatusIndex {
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    // корзина пары (type, status) лежит под номером type.ordinal() * STATUSES.length + status.ordinal()
+    private final List<LinkedHashMap<Integer, Task>> buckets = new ArrayList<>(TYPES.length * STATUSES.length);
+    private final IntObjectMap<LinkedHashMap<Integer, Task>> bucketById = new IntObjectMap<>();
+
+    public StatusIndex() {
+        for (int i = 0; i < TYPES.length * STATUSES.length; i++) {
+            buckets.add(new LinkedHashMap<>());
+        }
+    }
+
+    // Добавляет задачу или переносит её в корзину, соответствующую текущему статусу.
+    public void put(Task task) {
+        if (task.getStatus() == null) {
+            remove(task.getId());
+            return;
+        }
+        LinkedHashMap<Integer, Task> bucket = bucket(task.getType(), task.getStatus());
+        LinkedHashMap<Integer, Task> previous = bucketById.put(task.getId(), bucket);
+        if (previous != null && previous != bucket) {
+            previous.remove(task.getId());
+        }
+        bucket.put(task.getId(), task);
+    }
+
+    public void remove(int id) {
+        LinkedHashMap<Integer, Task> previous = bucketById.remove(id);
+        if (previous != null) {
+            previous.remove(id);
+        }
+    }
+
+    public void clear() {
+        bucketById.clear();
+        for (LinkedHashMap<Integer, Task> bucket : buckets) {
+            bucket.clear();
+        }
+    }
+
+    public List<Task> get(TaskType type, Status status) {
+        return new ArrayList<>(bucket(type, status).values());
+    }
+
+    public List<Task> get(Status status) {
+        List<Task> result = new ArrayList<>(count(status));
+        for (TaskType type : TYPES) {
+            result.addAll(bucket(type, status).values());
+        }
+        return result;
+    }
+
+    public int count(TaskType type, Status status) {
+        return bucket(type, status).size();
+    }
+
+    public int count(Status status) {
+        int result = 0;
+        for (TaskType type : TYPES) {
+            result += bucket(type, status).size();
+        }
+        return result;
+    }
+
+    private LinkedHashMap<Integer, Task> bucket(TaskType type, Status status) {
+        return buckets.get(type.ordinal() * STATUSES.length + status.ordinal());
+    }
+}
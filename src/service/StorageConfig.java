@@ -0,0 +1,117 @@
+package service;
+
+import java.time.Duration;
+
+// Настройки хранения FileBackedTaskManager. Объект неизменяемый, каждый with* возвращает копию.
+public class StorageConfig {
+    private final SaveMode saveMode;
+    private final FlushPolicy flushPolicy;
+    private final Duration flushInterval;
+    private final SnapshotFormat snapshotFormat;
+    // 0 - описания загружаются в память целиком
+    private final int descriptionCacheSize;
+    private final Durability durability;
+    // пороги фонового сжатия журнала, 0 - порог не задан; null вместо интервала - сжатие выключено
+    private final long compactionBytes;
+    private final long compactionRecords;
+    private final Duration compactionInterval;
+
+    private StorageConfig(SaveMode saveMode, FlushPolicy flushPolicy, Duration flushInterval, SnapshotFormat snapshotFormat,
+                          int descriptionCacheSize, Durability durability, long compactionBytes, long compactionRecords,
+                          Duration compactionInterval) {
+        this.saveMode = saveMode;
+        this.flushPolicy = flushPolicy;
+        this.flushInterval = flushInterval;
+        this.snapshotFormat = snapshotFormat;
+        this.descriptionCacheSize = descriptionCacheSize;
+        this.durability = durability;
+        this.compactionBytes = compactionBytes;
+        this.compactionRecords = compactionRecords;
+        this.compactionInterval = compactionInterval;
+    }
+
+    public static StorageConfig defaults() {
+        return new StorageConfig(SaveMode.SNAPSHOT, FlushPolicy.SYNC, Duration.ZERO, SnapshotFormat.CSV, 0, Durability.ATOMIC,
+                0, 0, null);
+    }
+
+    public StorageConfig withSaveMode(SaveMode saveMode) {
+        return new StorageConfig(saveMode, flushPolicy, flushInterval, snapshotFormat, descriptionCacheSize, durability,
+                compactionBytes, compactionRecords, compactionInterval);
+    }
+
+    public StorageConfig withFlushPolicy(FlushPolicy flushPolicy, Duration flushInterval) {
+        return new StorageConfig(saveMode, flushPolicy, flushInterval, snapshotFormat, descriptionCacheSize, durability,
+                compactionBytes, compactionRecords, compactionInterval);
+    }
+
+    public StorageConfig withSnapshotFormat(SnapshotFormat snapshotFormat) {
+        return new StorageConfig(saveMode, flushPolicy, flushInterval, snapshotFormat, descriptionCacheSize, durability,
+                compactionBytes, compactionRecords, compactionInterval);
+    }
+
+    // Описания из двоичного снимка остаются на диске и читаются по требованию через кэш на cacheSize строк.
+    // Действует только для формата BINARY; лучше сочетать с SaveMode.JOURNAL, потому что каждая
+    // перезапись снимка перечитывает все описания с диска.
+    public StorageConfig withLazyDescriptions(int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("Размер кэша описаний должен быть положительным: " + cacheSize);
+        }
+        return new StorageConfig(saveMode, flushPolicy, flushInterval, snapshotFormat, cacheSize, durability,
+                compactionBytes, compactionRecords, compactionInterval);
+    }
+
+    public StorageConfig withDurability(Durability durability) {
+        return new StorageConfig(saveMode, flushPolicy, flushInterval, snapshotFormat, descriptionCacheSize, durability,
+                compactionBytes, compactionRecords, compactionInterval);
+    }
+
+    // Для SaveMode.JOURNAL: раз в checkInterval фоновый поток проверяет размер журнала и, если он превысил
+    // maxJournalBytes байт или maxJournalRecords записей, пишет свежий снимок и удаляет вошедшие в него сегменты.
+    public StorageConfig withCompaction(long maxJournalBytes, long maxJournalRecords, Duration checkInterval) {
+        if (maxJournalBytes < 0 || maxJournalRecords < 0 || maxJournalBytes == 0 && maxJournalRecords == 0) {
+            throw new IllegalArgumentException("Нужен хотя бы один положительный порог сжатия журнала");
+        }
+        if (checkInterval.isNegative() || checkInterval.isZero()) {
+            throw new IllegalArgumentException("Интервал проверки журнала должен быть положительным: " + checkInterval);
+        }
+        return new StorageConfig(saveMode, flushPolicy, flushInterval, snapshotFormat, descriptionCacheSize, durability,
+                maxJournalBytes, maxJournalRecords, checkInterval);
+    }
+
+    public SaveMode getSaveMode() {
+        return saveMode;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public int getDescriptionCacheSize() {
+        return descriptionCacheSize;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public long getCompactionBytes() {
+        return compactionBytes;
+    }
+
+    public long getCompactionRecords() {
+        return compactionRecords;
+    }
+
+    public Duration getCompactionInterval() {
+        return compactionInterval;
+    }
+}
@@ -0,0 +1,6 @@
+package service;
+
+// Вызывается после каждой записи на диск: target - "snapshot", "journal" или "partition".
+public interface StorageListener {
+    void onWrite(String target, long bytes, long nanos);
+}
@@ -0,0 +1,69 @@
+package service;
+
+import model.Task;
+import model.TaskType;
+
+// Событие об изменении в менеджере (TaskManager.subscribe). Номер sequence растёт на единицу
+// с каждым событием менеджера; если номера идут с пропуском, перед ними подписчик получил OVERFLOW.
+public final class TaskEvent {
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED,
+        // у эпика изменились статус или время, вычисляемые по подзадачам
+        EPIC_CHANGED,
+        // удалены все задачи типа taskType; очистка эпиков удаляет и подзадачи
+        CLEARED,
+        // очередь подписчика переполнилась: события до sequence включительно могли потеряться,
+        // состояние нужно перечитать из менеджера
+        OVERFLOW
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final TaskType taskType;
+    private final int id;
+    private final Task task;
+
+    TaskEvent(long sequence, Type type, TaskType taskType, int id, Task task) {
+        this.sequence = sequence;
+        this.type = type;
+        this.taskType = taskType;
+        this.id = id;
+        this.task = task;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // null для OVERFLOW
+    public TaskType getTaskType() {
+        return taskType;
+    }
+
+    // 0 для CLEARED и OVERFLOW
+    public int getId() {
+        return id;
+    }
+
+    // Задача после изменения (хранимый объект, менять его нельзя), для EPIC_CHANGED - копия эпика
+    // на момент события; null для DELETED, CLEARED и OVERFLOW.
+    public Task getTask() {
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskEvent{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", taskType=" + taskType +
+                ", id=" + id +
+                '}';
+    }
+}
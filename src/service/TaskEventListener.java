@@ -0,0 +1,8 @@
+package service;
+
+import java.util.List;
+
+// Получает события пачками в порядке sequence. Вызывается из отдельного потока, по одной пачке за раз.
+public interface TaskEventListener {
+    void onEvents(List<TaskEvent> events);
+}
@@ -0,0 +1,211 @@
+package service;
+
+import model.Epic;
+import model.Status;
+import model.Task;
+import model.TaskType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Рассылка событий менеджера подписчикам. Изменяющий поток только кладёт событие в ограниченную очередь
+// каждого подписчика и никогда не ждёт его: доставкой занимается виртуальный поток подписки, который
+// запускается, когда в пустой очереди появляются события, и отдаёт их пачками до MAX_BATCH.
+// Если подписчик не успевает и очередь полна, события для него отбрасываются, а на место пропуска
+// ставится одно событие OVERFLOW. Пачка, на которой обработчик бросил исключение, тоже считается
+// потерянной: ошибка печатается со стеком, а подписчик сразу получает OVERFLOW.
+// Без подписчиков publish() сводится к чтению volatile-поля.
+final class TaskEvents {
+    static final int DEFAULT_CAPACITY = 4096;
+    static final int MAX_BATCH = 256;
+
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    // защищено монитором: номер и порядок постановки в очереди должны совпадать
+    private long sequence;
+
+    boolean isActive() {
+        return subscriptions.length > 0;
+    }
+
+    TaskSubscription subscribe(TaskEventListener listener, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер очереди подписчика должен быть положительным: " + capacity);
+        }
+        Subscription subscription = new Subscription(Objects.requireNonNull(listener), capacity);
+        synchronized (this) {
+            Subscription[] current = subscriptions;
+            Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            subscriptions = updated;
+        }
+        return subscription;
+    }
+
+    void publish(TaskEvent.Type type, TaskType taskType, int id, Task task) {
+        if (subscriptions.length == 0) {
+            return;
+        }
+        synchronized (this) {
+            TaskEvent event = new TaskEvent(++sequence, type, taskType, id, task);
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    void added(Task task) {
+        publish(TaskEvent.Type.ADDED, task.getType(), task.getId(), task);
+    }
+
+    void updated(Task task) {
+        publish(TaskEvent.Type.UPDATED, task.getType(), task.getId(), task);
+    }
+
+    void deleted(TaskType taskType, int id) {
+        publish(TaskEvent.Type.DELETED, taskType, id, null);
+    }
+
+    void cleared(TaskType taskType) {
+        publish(TaskEvent.Type.CLEARED, taskType, 0, null);
+    }
+
+    // Вычисляемые поля эпика до пересчёта подзадач или null, если подписчиков нет.
+    EpicState epicState(Epic epic) {
+        return epic != null && isActive() ? new EpicState(epic) : null;
+    }
+
+    // Публикует EPIC_CHANGED, если пересчёт изменил статус или время эпика. Хранимый эпик пересчитывается
+    // на месте, поэтому в событие идёт копия - со статусом и временем на момент события.
+    void epicRecomputed(Epic epic, EpicState before) {
+        if (before != null && before.differs(epic)) {
+            publish(TaskEvent.Type.EPIC_CHANGED, TaskType.EPIC, epic.getId(), new Epic(epic));
+        }
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        List<Subscription> remaining = new ArrayList<>(Arrays.asList(subscriptions));
+        remaining.remove(subscription);
+        subscriptions = remaining.toArray(new Subscription[0]);
+    }
+
+    static final class EpicState {
+        private final Status status;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final Duration duration;
+
+        private EpicState(Epic epic) {
+            this.status = epic.getStatus();
+            this.startTime = epic.getStartTime();
+            this.endTime = epic.getEndTime();
+            this.duration = epic.getDuration();
+        }
+
+        private boolean differs(Epic epic) {
+            return status != epic.getStatus()
+                    || !Objects.equals(startTime, epic.getStartTime())
+                    || !Objects.equals(endTime, epic.getEndTime())
+                    || !Objects.equals(duration, epic.getDuration());
+        }
+    }
+
+    private final class Subscription implements TaskSubscription {
+        private final TaskEventListener listener;
+        private final ArrayBlockingQueue<TaskEvent> queue;
+        // поток доставки запущен и ещё не увидел пустую очередь
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean closed;
+        // защищены монитором TaskEvents: отброшенные события, о которых подписчик ещё не узнал
+        private boolean overflowPending;
+        private long lastDropped;
+
+        Subscription(TaskEventListener listener, int capacity) {
+            this.listener = listener;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return dropped.get();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            remove(this);
+            queue.clear();
+        }
+
+        // вызывается под монитором TaskEvents
+        void offer(TaskEvent event) {
+            if (overflowPending && !offerOverflow() || !queue.offer(event)) {
+                overflowPending = true;
+                lastDropped = event.getSequence();
+                dropped.incrementAndGet();
+            }
+            if (draining.compareAndSet(false, true)) {
+                Thread.startVirtualThread(this::drain);
+            }
+        }
+
+        // вызывается под монитором TaskEvents
+        private boolean offerOverflow() {
+            if (!queue.offer(new TaskEvent(lastDropped, TaskEvent.Type.OVERFLOW, null, 0, null))) {
+                return false;
+            }
+            overflowPending = false;
+            return true;
+        }
+
+        private void drain() {
+            while (!closed) {
+                List<TaskEvent> batch = new ArrayList<>(Math.min(MAX_BATCH, queue.size()));
+                queue.drainTo(batch, MAX_BATCH);
+                if (batch.isEmpty()) {
+                    // события ставятся в очередь под тем же монитором, так что после проверки ни одно не потеряется
+                    synchronized (TaskEvents.this) {
+                        if (queue.isEmpty() && !(overflowPending && offerOverflow())) {
+                            draining.set(false);
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                try {
+                    listener.onEvents(batch);
+                } catch (RuntimeException e) {
+                    // ошибка подписчика не должна останавливать доставку следующих событий
+                    failed(batch, e);
+                }
+            }
+            draining.set(false);
+        }
+
+        // Пачка не обработана: подписчик узнаёт об этом через OVERFLOW до следующих событий.
+        private void failed(List<TaskEvent> batch, RuntimeException error) {
+            long last = batch.get(batch.size() - 1).getSequence();
+            System.err.println("Ошибка в обработчике событий, события до " + last + " не обработаны:");
+            error.printStackTrace();
+            long lost = batch.stream().filter(event -> event.getType() != TaskEvent.Type.OVERFLOW).count();
+            if (lost == 0) {
+                // не обработан сам OVERFLOW - повторять его бесполезно
+                return;
+            }
+            dropped.addAndGet(lost);
+            try {
+                listener.onEvents(List.of(new TaskEvent(last, TaskEvent.Type.OVERFLOW, null, 0, null)));
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка в обработчике событий при доставке OVERFLOW:");
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+// Журнал изменений: каждая операция дописывает в конец файла одну строку.
+// rotate() закрывает текущий файл как сегмент <журнал>.<n>, и новые записи идут в свежий файл;
+// при чтении сегменты применяются по возрастанию номера, затем текущий файл.
+public class TaskJournal {
+    public static final String PUT = "PUT";
+    public static final String DELETE = "DELETE";
+    public static final String CLEAR = "CLEAR";
+
+    private final Path path;
+    private final Durability durability;
+
+    public TaskJournal(Path path) {
+        this(path, Durability.NONE);
+    }
+
+    // В режиме FSYNC каждая запись сбрасывается на диск до возврата из append().
+    public TaskJournal(Path path, Durability durability) {
+        this.path = path;
+        this.durability = durability;
+    }
+
+    public static Path pathFor(Path snapshotPath) {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + ".log");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Есть ли на диске текущий файл журнала или закрытые сегменты.
+    public boolean exists() {
+        return Files.exists(path) || !segments().isEmpty();
+    }
+
+    // Возвращает число записанных байт.
+    public int append(String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        try {
+            DurableFiles.append(path, bytes, durability);
+            return bytes.length;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время записи журнала.", e);
+        }
+    }
+
+    // Недописанная последняя строка (сбой во время записи) не возвращается и отрезается от файла,
+    // иначе следующая запись продолжила бы её в той же строке и испортила обе.
+    public List<String> readRecords() {
+        List<String> records = new ArrayList<>();
+        try {
+            for (int segment : segments()) {
+                readComplete(segmentPath(segment), records);
+            }
+            if (Files.exists(path)) {
+                readComplete(path, records);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения журнала.", e);
+        }
+        return records;
+    }
+
+    private void readComplete(Path file, List<String> records) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+                if (durability == Durability.FSYNC) {
+                    channel.force(false);
+                }
+            }
+        }
+        new String(bytes, 0, end, StandardCharsets.UTF_8).lines().forEach(records::add);
+    }
+
+    // Суммарный размер журнала вместе с закрытыми сегментами.
+    public long sizeInBytes() {
+        long size = 0;
+        try {
+            for (int segment : segments()) {
+                size += Files.size(segmentPath(segment));
+            }
+            if (Files.exists(path)) {
+                size += Files.size(path);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения журнала.", e);
+        }
+        return size;
+    }
+
+    // Номера закрытых сегментов по возрастанию.
+    public TreeSet<Integer> segments() {
+        TreeSet<Integer> result = new TreeSet<>();
+        Path directory = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    result.add(Integer.parseInt(suffix));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения каталога журнала.", e);
+        }
+        return result;
+    }
+
+    // Закрывает текущий файл как новый сегмент. Возвращает номер последнего закрытого сегмента
+    // (все записи до этого момента лежат в сегментах с номерами не больше него) или -1, если сегментов нет.
+    public int rotate() {
+        TreeSet<Integer> closed = segments();
+        int last = closed.isEmpty() ? -1 : closed.last();
+        if (!Files.exists(path)) {
+            return last;
+        }
+        Path target = segmentPath(last + 1);
+        try {
+            try {
+                Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(path, target);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось закрыть сегмент журнала.", e);
+        }
+        if (durability == Durability.FSYNC) {
+            DurableFiles.syncDirectory(path);
+        }
+        return last + 1;
+    }
+
+    // Удаляет сегменты, уже вошедшие в снимок.
+    public void deleteSegmentsUpTo(int segment) {
+        try {
+            for (int closed : segments().headSet(segment, true)) {
+                Files.deleteIfExists(segmentPath(closed));
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось удалить сегмент журнала.", e);
+        }
+    }
+
+    public void truncate() {
+        deleteSegmentsUpTo(Integer.MAX_VALUE);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось очистить журнал.", e);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return path.resolveSibling(path.getFileName() + "." + segment);
+    }
+}
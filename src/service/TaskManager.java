@@ -1,13 +1,22 @@
 package service;
 
 import model.Epic;
+import model.Status;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TaskManager {
+    // Каждый вызов собирает новую изменяемую HashMap за O(n), изменения в ней на менеджер не влияют.
+    // Для обхода без копирования - getTaskView(), getEpicView() и getSubtaskView().
     HashMap<Integer, Task> getTasks();
 
     HashMap<Integer, Epic> getEpics();
@@ -48,5 +57,63 @@ public interface TaskManager {
 
     List<Task> getPrioritizedTasks();
 
+    List<Task> getHistory();
+
+    // Подписка на события об изменениях (TaskEvent) вместо опроса getTasks() и getPrioritizedTasks().
+    // Изменяющие методы не ждут подписчика: события копятся в его очереди на capacity событий
+    // (по умолчанию 4096) и доставляются пачками в отдельном потоке, а при переполнении отбрасываются.
+    TaskSubscription subscribe(TaskEventListener listener);
+
+    TaskSubscription subscribe(TaskEventListener listener, int capacity);
+
+    // Выборки и счётчики по вторичному индексу статусов: O(k) и O(1) вместо обхода всех задач.
+    List<Task> getTasksByStatus(Status status);
+
+    List<Task> getTasksByStatus(TaskType type, Status status);
+
+    int getStatusCount(Status status);
+
+    int getStatusCount(TaskType type, Status status);
+
+    // Поиск по словам из названия и описания: каждое слово запроса - префикс слова задачи, результаты по id.
+    List<Task> search(String query, int limit);
+
+    // Чтение без копирования всей доски: страницы расписания, обход и представления хранилища только для чтения.
+    // Стоимость страницы зависит от limit, а не от размера доски.
+    List<Task> getPrioritizedTasks(LocalDateTime from, int limit);
+
+    List<Task> getPrioritizedTasksAfter(Task cursor, int limit);
+
+    void forEachPrioritized(Consumer<? super Task> action);
+
+    Collection<Task> getTaskView();
+
+    Collection<Epic> getEpicView();
+
+    Collection<Subtask> getSubtaskView();
+
     boolean isTaskOverlapping(Task task);
+
+    List<Task> getOverlappingTasks(Task task);
+
+    // Календарные запросы по расписанию за O(log n + k). Окна полуоткрытые: [from, to).
+    List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to);
+
+    List<Task> getTasksActiveAt(LocalDateTime instant);
+
+    List<Task> getTasksIntersecting(LocalDateTime from, LocalDateTime to);
+
+    // Начало первого свободного промежутка длиной duration не раньше earliestStart.
+    LocalDateTime findEarliestSlot(Duration duration, LocalDateTime earliestStart);
+
+    // То же, но слот целиком должен помещаться в рабочие часы [workdayStart, workdayEnd) одного дня.
+    LocalDateTime findEarliestSlot(Duration duration, LocalDateTime earliestStart, LocalTime workdayStart, LocalTime workdayEnd);
+
+    // Пакетные операции: весь пакет проверяется за один проход, каждый затронутый эпик пересчитывается один раз.
+    // Возвращают исход для каждого элемента в порядке входного списка.
+    List<BatchOutcome> addAll(List<? extends Task> items);
+
+    List<BatchOutcome> updateAll(List<? extends Task> items);
+
+    List<BatchOutcome> deleteAll(List<? extends Task> items);
 }
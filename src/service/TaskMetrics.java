@@ -0,0 +1,47 @@
+package service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Набор именованных гистограмм менеджера. Снимается по запросу через dump() или getHistograms().
+public class TaskMetrics {
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public void record(String name, long value) {
+        histogram(name).record(value);
+    }
+
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    // Одна строка на метрику: имя, число вызовов, p50, p99, max и среднее.
+    // Для метрик *.nanos значения в наносекундах, для *.bytes - в байтах, для scanLength - в узлах дерева.
+    public String dump() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : getHistograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            result.append(entry.getKey())
+                    .append(" count=").append(histogram.getCount())
+                    .append(" p50=").append(histogram.getPercentile(50))
+                    .append(" p99=").append(histogram.getPercentile(99))
+                    .append(" max=").append(histogram.getMax())
+                    .append(" mean=").append(String.format(Locale.ROOT, "%.1f", histogram.getMean()))
+                    .append('\n');
+        }
+        return result.toString();
+    }
+}
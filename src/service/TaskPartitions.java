@@ -0,0 +1,116 @@
+package service;
+
+import model.Task;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+// Раскладка по сегментам для SaveMode.PARTITIONED: задачи, эпики и подзадачи с id из [k * SIZE, (k + 1) * SIZE)
+// лежат в файле part-k.csv каталога <снимок>.parts. Изменение переписывает только сегменты затронутых id,
+// а при загрузке сегменты разбираются параллельно.
+public class TaskPartitions {
+    public static final int SIZE = 1024;
+    private static final String HEADER = "id,type,name,status,description,epic\n";
+    private static final String PREFIX = "part-";
+    private static final String SUFFIX = ".csv";
+
+    private final Path directory;
+    private final Durability durability;
+
+    public TaskPartitions(Path directory) {
+        this(directory, Durability.NONE);
+    }
+
+    public TaskPartitions(Path directory, Durability durability) {
+        this.directory = directory;
+        this.durability = durability;
+    }
+
+    public static Path pathFor(Path snapshotPath) {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + ".parts");
+    }
+
+    public static int partitionOf(int id) {
+        return Math.floorDiv(id, SIZE);
+    }
+
+    public static int firstId(int partition) {
+        return partition * SIZE;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Номера сегментов, записанных на диск.
+    public TreeSet<Integer> stored() {
+        TreeSet<Integer> result = new TreeSet<>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                result.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения каталога сегментов.", e);
+        }
+        return result;
+    }
+
+    // Пустое содержимое удаляет сегмент. Возвращает число записанных байт.
+    public int write(int partition, String records) {
+        Path file = directory.resolve(PREFIX + partition + SUFFIX);
+        try {
+            if (records.isEmpty()) {
+                Files.deleteIfExists(file);
+                return 0;
+            }
+            Files.createDirectories(directory);
+            byte[] bytes = (HEADER + records).getBytes(StandardCharsets.UTF_8);
+            DurableFiles.write(file, bytes, durability);
+            return bytes.length;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время записи сегмента " + file, e);
+        }
+    }
+
+    // Каждый сегмент читается и разбирается в своём потоке общего пула; порядок задач внутри сегмента сохраняется.
+    public List<Task> readAll(Function<String, Task> parser) {
+        List<Integer> partitions = new ArrayList<>(stored());
+        List<List<Task>> loaded = partitions.parallelStream()
+                .map(partition -> read(directory.resolve(PREFIX + partition + SUFFIX), parser))
+                .toList();
+        List<Task> result = new ArrayList<>();
+        loaded.forEach(result::addAll);
+        return result;
+    }
+
+    private static List<Task> read(Path file, Function<String, Task> parser) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения сегмента " + file, e);
+        }
+        List<Task> result = new ArrayList<>(lines.size());
+        // первая строка - названия колонок
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            try {
+                result.add(parser.apply(line));
+            } catch (Exception e) {
+                throw new ManagerSaveException("Ошибка при чтении строки: " + line, e);
+            }
+        }
+        return result;
+    }
+}
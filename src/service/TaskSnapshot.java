@@ -0,0 +1,84 @@
+package service;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Неизменяемое состояние менеджера на момент InMemoryTaskManager.snapshot().
+// Чтение не берёт блокировок и не видит изменений, сделанных после снимка.
+public final class TaskSnapshot {
+    private final IntObjectMap<Task> tasks;
+    private final IntObjectMap<Epic> epics;
+    private final IntObjectMap<Subtask> subtasks;
+    private final IntervalIndex schedule;
+
+    TaskSnapshot(IntObjectMap<Task> tasks, IntObjectMap<Epic> epics, IntObjectMap<Subtask> subtasks,
+                 IntervalIndex schedule) {
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+        this.schedule = schedule;
+    }
+
+    // Совпадает ли снимок с текущим состоянием менеджера.
+    boolean isCurrent(IntObjectMap<Task> tasks, IntObjectMap<Epic> epics, IntObjectMap<Subtask> subtasks,
+                      IntervalIndex schedule) {
+        return tasks.isUnchangedSince(this.tasks) && epics.isUnchangedSince(this.epics)
+                && subtasks.isUnchangedSince(this.subtasks) && schedule.isUnchangedSince(this.schedule);
+    }
+
+    public Task getTask(int id) {
+        return tasks.get(id);
+    }
+
+    public Epic getEpic(int id) {
+        return epics.get(id);
+    }
+
+    public Subtask getSubtask(int id) {
+        return subtasks.get(id);
+    }
+
+    public Collection<Task> getTasks() {
+        return Collections.unmodifiableCollection(tasks.values());
+    }
+
+    public Collection<Epic> getEpics() {
+        return Collections.unmodifiableCollection(epics.values());
+    }
+
+    public Collection<Subtask> getSubtasks() {
+        return Collections.unmodifiableCollection(subtasks.values());
+    }
+
+    public List<Subtask> getSubtasksInEpic(int epicId) {
+        Epic epic = epics.get(epicId);
+        return epic == null ? List.of() : Collections.unmodifiableList(epic.getSubtasks());
+    }
+
+    public int size() {
+        return tasks.size() + epics.size() + subtasks.size();
+    }
+
+    public List<Task> getPrioritizedTasks() {
+        return schedule.toList();
+    }
+
+    public List<Task> getPrioritizedTasks(LocalDateTime from, int limit) {
+        return Collections.unmodifiableList(schedule.page(from, limit));
+    }
+
+    public void forEachPrioritized(Consumer<? super Task> action) {
+        schedule.forEach(action);
+    }
+
+    public List<Task> getTasksIntersecting(LocalDateTime from, LocalDateTime to) {
+        return schedule.findIntersecting(from, to);
+    }
+}
@@ -0,0 +1,10 @@
+package service;
+
+// Подписка на события менеджера; close() отписывает, недоставленные события отбрасываются.
+public interface TaskSubscription extends AutoCloseable {
+    // Сколько событий отброшено из-за переполнения очереди подписчика или не обработано из-за исключения в нём.
+    long getDroppedCount();
+
+    @Override
+    void close();
+}
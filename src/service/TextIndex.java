@@ -0,0 +1,123 @@
+package service;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Инвертированный индекс по словам из названия и описания задачи.
+// Словарь упорядочен, поэтому все слова с заданным префиксом - это один подотрезок TreeMap.
+// Для каждого id хранятся его слова, чтобы при обновлении и удалении убрать только его записи.
+// Не потокобезопасен.
+public class TextIndex {
+    private final TreeMap<String, Set<Integer>> postings = new TreeMap<>();
+    private final IntObjectMap<String[]> termsById = new IntObjectMap<>();
+
+    // Слова - непрерывные последовательности букв и цифр в нижнем регистре.
+    static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                result.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    public void put(Task task) {
+        remove(task.getId());
+        Set<String> terms = new LinkedHashSet<>(tokenize(task.getName()));
+        terms.addAll(tokenize(task.getDescription()));
+        if (terms.isEmpty()) {
+            return;
+        }
+        for (String term : terms) {
+            postings.computeIfAbsent(term, key -> new HashSet<>()).add(task.getId());
+        }
+        termsById.put(task.getId(), terms.toArray(new String[0]));
+    }
+
+    public void remove(int id) {
+        String[] terms = termsById.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Set<Integer> ids = postings.get(term);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        termsById.clear();
+    }
+
+    // id задач, в которых каждое слово запроса является префиксом какого-нибудь слова задачи.
+    // Пересечение начинается с самого короткого списка; результат упорядочен по id и обрезан до limit.
+    public List<Integer> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<Set<Integer>> matches = new ArrayList<>(terms.size());
+        for (String term : new LinkedHashSet<>(terms)) {
+            Set<Integer> ids = matching(term);
+            if (ids.isEmpty()) {
+                return new ArrayList<>();
+            }
+            matches.add(ids);
+        }
+        matches.sort(Comparator.comparingInt(Set::size));
+
+        Set<Integer> smallest = matches.get(0);
+        int[] found = new int[smallest.size()];
+        int count = 0;
+        for (int id : smallest) {
+            boolean inAll = true;
+            for (int i = 1; i < matches.size() && inAll; i++) {
+                inAll = matches.get(i).contains(id);
+            }
+            if (inAll) {
+                found[count++] = id;
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<Integer> result = new ArrayList<>(Math.min(count, limit));
+        for (int i = 0; i < count && i < limit; i++) {
+            result.add(found[i]);
+        }
+        return result;
+    }
+
+    private Set<Integer> matching(String prefix) {
+        SortedMap<String, Set<Integer>> range = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (range.size() == 1) {
+            return range.values().iterator().next();
+        }
+        Set<Integer> result = new HashSet<>();
+        for (Set<Integer> ids : range.values()) {
+            result.addAll(ids);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.Test;
+import service.BufferedHistoryManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferedHistoryManagerTest {
+
+    private Task task(int id) {
+        return new Task(id, "task " + id, "description " + id, Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0).plusDays(id));
+    }
+
+    @Test
+    public void shouldKeepOrderAndMoveRepeatedViewsToTheEnd() {
+        BufferedHistoryManager historyManager = new BufferedHistoryManager();
+        historyManager.add(task(1));
+        historyManager.add(task(2));
+        historyManager.add(task(3));
+        historyManager.add(task(1));
+
+        assertEquals(List.of(task(2), task(3), task(1)), historyManager.getHistory(), "Повторный просмотр должен переносить задачу в конец");
+        historyManager.remove(3);
+        assertEquals(List.of(task(2), task(1)), historyManager.getHistory());
+    }
+
+    @Test
+    public void shouldEvictOldestTasksWhenFull() {
+        BufferedHistoryManager historyManager = new BufferedHistoryManager(3);
+        for (int id = 1; id <= 500; id++) {
+            historyManager.add(task(id));
+        }
+        assertEquals(List.of(task(498), task(499), task(500)), historyManager.getHistory(), "Должны остаться только последние просмотры");
+    }
+
+    @Test
+    public void shouldNotLoseViewsFromConcurrentReaders() throws Exception {
+        BufferedHistoryManager historyManager = new BufferedHistoryManager();
+        int threads = 8;
+        int tasksPerThread = 1_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t * tasksPerThread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int repeat = 0; repeat < 3; repeat++) {
+                    for (int id = first; id < first + tasksPerThread; id++) {
+                        historyManager.add(task(id));
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<Task> history = historyManager.getHistory();
+        assertEquals(threads * tasksPerThread, history.size(), "Каждая просмотренная задача должна попасть в историю ровно один раз");
+        assertEquals(history.size(), new HashSet<>(history).size());
+    }
+
+    @Test
+    public void historyShouldFollowViewOrderAcrossThreads() throws Exception {
+        BufferedHistoryManager historyManager = new BufferedHistoryManager();
+        int threads = 8;
+        int views = 20_000;
+        int[] next = {0};
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                while (true) {
+                    // просмотры из разных потоков идут по очереди, значит и в истории должны стоять по очереди
+                    synchronized (next) {
+                        if (next[0] == views) {
+                            return null;
+                        }
+                        historyManager.add(task(next[0]++));
+                    }
+                }
+            }));
+        }
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (historyManager.getHistory().size() < views) {
+                Thread.yield();
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        reader.get();
+        executor.shutdown();
+
+        List<Task> history = historyManager.getHistory();
+        for (int i = 0; i < views; i++) {
+            assertEquals(i, history.get(i).getId(), "Порядок истории должен совпадать с порядком просмотров");
+        }
+    }
+
+    @Test
+    public void removedTasksShouldNotComeBackWithConcurrentViews() throws Exception {
+        BufferedHistoryManager historyManager = new BufferedHistoryManager();
+        int threads = 8;
+        int tasksPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        LinkedBlockingQueue<Integer> viewed = new LinkedBlockingQueue<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t * tasksPerThread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int id = first; id < first + tasksPerThread; id++) {
+                    historyManager.add(task(id));
+                    viewed.add(id);
+                    // просмотры соседних задач идут параллельно с удалением уже просмотренных
+                    historyManager.add(task(first));
+                }
+                return null;
+            }));
+        }
+        Set<Integer> removed = new HashSet<>();
+        Future<?> remover = executor.submit(() -> {
+            start.await();
+            while (removed.size() < threads * (tasksPerThread - 1)) {
+                Integer id = viewed.poll(1, TimeUnit.SECONDS);
+                if (id != null && id % tasksPerThread != 0) {
+                    historyManager.remove(id);
+                    removed.add(id);
+                }
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        remover.get();
+        executor.shutdown();
+
+        List<Task> history = historyManager.getHistory();
+        assertEquals(threads, history.size(), "Удалённые задачи не должны возвращаться в историю: " + history.size());
+        for (Task task : history) {
+            assertEquals(0, task.getId() % tasksPerThread);
+        }
+        for (Task task : history) {
+            historyManager.remove(task.getId());
+        }
+        assertTrue(historyManager.getHistory().isEmpty());
+    }
+}
@@ -0,0 +1,220 @@
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+import org.junit.jupiter.api.Test;
+import service.ConcurrentTaskManager;
+import service.TaskEvent;
+import service.TaskSubscription;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 5, 5, 0, 0);
+    private static final int THREADS = 8;
+
+    @Override
+    protected ConcurrentTaskManager createManager() {
+        return new ConcurrentTaskManager();
+    }
+
+    private void runConcurrently(int threads, ThrowingTask body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                body.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private interface ThrowingTask {
+        void run(int thread) throws Exception;
+    }
+
+    @Test
+    public void scheduleShouldStayFreeOfOverlapsUnderContention() throws Exception {
+        runConcurrently(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 2_000; i++) {
+                taskManager.addTask(new Task("task", "desc", Status.NEW,
+                        Duration.ofMinutes(1 + random.nextInt(60)), BASE.plusMinutes(random.nextInt(50_000))));
+                if (i % 50 == 0) {
+                    taskManager.getPrioritizedTasks();
+                }
+            }
+        });
+
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        assertEquals(taskManager.getTasks().size(), prioritized.size(), "Все задачи со временем должны быть в расписании");
+        for (int i = 1; i < prioritized.size(); i++) {
+            assertFalse(prioritized.get(i).getStartTime().isBefore(prioritized.get(i - 1).getEndTime()),
+                    "Задачи в расписании не должны пересекаться");
+        }
+        assertEquals(prioritized.size(), prioritized.stream().map(Task::getId).distinct().count(), "id задач должны быть уникальны");
+    }
+
+    @Test
+    public void movedSubtasksShouldNotOutliveDeletedEpics() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            Epic from = new Epic("from", "desc");
+            Epic to = new Epic("to", "desc");
+            taskManager.addEpic(from);
+            taskManager.addEpic(to);
+            List<Subtask> moving = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Subtask subtask = new Subtask("subtask", "desc", Status.NEW, from.getId(), null, null);
+                taskManager.addSubtask(subtask);
+                moving.add(subtask);
+            }
+
+            runConcurrently(2, thread -> {
+                if (thread == 0) {
+                    for (Subtask subtask : moving) {
+                        taskManager.updateSubtask(new Subtask(subtask.getId(), "moved", "desc", Status.DONE, to.getId(), null, null));
+                    }
+                } else {
+                    taskManager.deleteEpic(from);
+                }
+            });
+
+            for (Subtask subtask : taskManager.getSubtasks().values()) {
+                Epic epic = taskManager.getEpicById(subtask.getEpicId());
+                assertNotNull(epic, "Подзадача не должна пережить свой эпик");
+                assertTrue(epic.getSubtasks().contains(subtask), "Подзадача должна быть в списке своего эпика");
+            }
+            assertNull(taskManager.getEpicById(from.getId()));
+            taskManager.deleteEpic(to);
+        }
+    }
+
+    @Test
+    public void epicsShouldStayConsistentUnderContention() throws Exception {
+        List<Epic> epics = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Epic epic = new Epic("epic " + i, "desc");
+            taskManager.addEpic(epic);
+            epics.add(epic);
+        }
+
+        runConcurrently(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 1_000; i++) {
+                Epic epic = epics.get(random.nextInt(epics.size()));
+                Status status = Status.values()[random.nextInt(Status.values().length)];
+                Subtask subtask = new Subtask("subtask", "desc", status, epic.getId(), null, null);
+                taskManager.addSubtask(subtask);
+                if (random.nextBoolean()) {
+                    taskManager.updateSubtask(new Subtask(subtask.getId(), "subtask", "desc", Status.DONE, epic.getId(), null, null));
+                }
+                if (random.nextInt(3) == 0) {
+                    taskManager.deleteSubtask(subtask);
+                }
+                taskManager.getEpicById(epic.getId());
+            }
+        });
+
+        for (Epic epic : epics) {
+            List<Subtask> inEpic = taskManager.getSubtasksInEpic(epic);
+            long inMap = taskManager.getSubtasks().values().stream().filter(s -> s.getEpicId() == epic.getId()).count();
+            assertEquals(inMap, inEpic.size(), "Список подзадач эпика должен совпадать с хранилищем");
+            boolean allDone = inEpic.stream().allMatch(s -> s.getStatus() == Status.DONE);
+            boolean allNew = inEpic.stream().allMatch(s -> s.getStatus() == Status.NEW);
+            Status expected = inEpic.isEmpty() || allNew ? Status.NEW : allDone ? Status.DONE : Status.IN_PROGRESS;
+            assertEquals(expected, taskManager.getEpicById(epic.getId()).getStatus(), "Статус эпика должен соответствовать подзадачам");
+            assertTrue(taskManager.getTasksByStatus(TaskType.EPIC, expected).contains(epic), "Эпик должен лежать в индексе под своим статусом");
+        }
+        for (Status status : Status.values()) {
+            long inMap = taskManager.getSubtasks().values().stream().filter(s -> s.getStatus() == status).count();
+            assertEquals(inMap, taskManager.getStatusCount(TaskType.SUBTASK, status), "Индекс статусов должен совпадать с хранилищем");
+        }
+    }
+
+    @Test
+    public void readersShouldGetStableEpicCopies() throws Exception {
+        Epic epic = new Epic("epic", "desc");
+        taskManager.addEpic(epic);
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < 2_000; i++) {
+                if (thread % 2 == 0) {
+                    Subtask subtask = new Subtask("subtask", "desc", Status.DONE, epic.getId(), null, null);
+                    taskManager.addSubtask(subtask);
+                    taskManager.deleteSubtask(subtask);
+                } else {
+                    Epic read = i % 2 == 0 ? taskManager.getEpicById(epic.getId()) : taskManager.getEpicView().iterator().next();
+                    int done = 0;
+                    for (Subtask subtask : read.getSubtasks()) {
+                        done += subtask.getStatus() == Status.DONE ? 1 : 0;
+                    }
+                    assertEquals(read.getSubtasks().size(), done);
+                }
+            }
+        });
+
+        Epic read = taskManager.getEpicById(epic.getId());
+        assertNotSame(read, taskManager.getEpicById(epic.getId()), "Наружу должна отдаваться копия хранимого эпика");
+        assertTrue(read.getSubtasks().isEmpty());
+        assertEquals(Status.NEW, read.getStatus());
+    }
+
+    @Test
+    public void addedShouldPrecedeDeletedForRacingWriters() throws Exception {
+        Map<Integer, Long> added = new ConcurrentHashMap<>();
+        Map<Integer, Long> deleted = new ConcurrentHashMap<>();
+        TaskSubscription subscription = taskManager.subscribe(events -> events.forEach(event -> {
+            if (event.getType() == TaskEvent.Type.ADDED) {
+                added.put(event.getId(), event.getSequence());
+            } else if (event.getType() == TaskEvent.Type.DELETED) {
+                deleted.put(event.getId(), event.getSequence());
+            }
+        }), 1 << 16);
+
+        runConcurrently(2, thread -> {
+            for (int i = 0; i < 5_000; i++) {
+                if (thread == 0) {
+                    taskManager.addTask(new Task("task", "desc", Status.NEW, null, null));
+                    taskManager.addEpic(new Epic("epic", "desc"));
+                } else {
+                    taskManager.getTaskView().forEach(taskManager::deleteTask);
+                    taskManager.getEpicView().forEach(taskManager::deleteEpic);
+                }
+            }
+        });
+
+        // события доставляются по порядку: после последнего ADDED получены и все предыдущие
+        Task last = new Task("last", "desc", Status.NEW, null, null);
+        taskManager.addTask(last);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!added.containsKey(last.getId()) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        subscription.close();
+        assertEquals(0, subscription.getDroppedCount());
+        assertFalse(deleted.isEmpty());
+        deleted.forEach((id, sequence) -> assertTrue(added.get(id) < sequence, "DELETED не должно опережать ADDED задачи " + id));
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -72,4 +73,57 @@ class EpicTest {
         epic.removeSubtask(subtask1);
         assertEquals(Status.NEW, epic.getStatus(), "Эпик без подзадач должен иметь статус NEW");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldUpdateTimeFieldsWhenSubtasksChange() {
+        Epic epic = new Epic("test epic", "epic desc");
+        Subtask subtask1 = new Subtask(2, "subtask 1", "subtask desc", Status.NEW, 1, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0));
+        Subtask subtask2 = new Subtask(3, "subtask 2", "subtask desc", Status.NEW, 1, Duration.ofMinutes(120), LocalDateTime.of(2025, 5, 6, 10, 0));
+        epic.addSubtask(subtask1);
+        epic.addSubtask(subtask2);
+        assertEquals(LocalDateTime.of(2025, 5, 5, 13, 0), epic.getStartTime());
+        assertEquals(LocalDateTime.of(2025, 5, 6, 12, 0), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(180), epic.getDuration());
+
+        epic.removeSubtask(subtask1);
+        assertEquals(LocalDateTime.of(2025, 5, 6, 10, 0), epic.getStartTime(), "Начало эпика должно сдвинуться к оставшейся подзадаче");
+        assertEquals(Duration.ofMinutes(120), epic.getDuration());
+
+        epic.removeSubtask(subtask2);
+        assertNull(epic.getStartTime());
+        assertNull(epic.getEndTime());
+        assertEquals(Duration.ZERO, epic.getDuration());
+    }
+
+    @Test
+    public void shouldRecalculateOnSubtaskReplacement() {
+        Epic epic = new Epic("test epic", "epic desc");
+        epic.addSubtask(new Subtask(2, "subtask 1", "subtask desc", Status.NEW, 1, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0)));
+        epic.addSubtask(new Subtask(3, "subtask 2", "subtask desc", Status.NEW, 1, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 6, 13, 0)));
+
+        assertTrue(epic.replaceSubtask(new Subtask(3, "subtask 2", "subtask desc", Status.DONE, 1, Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 7, 13, 0))));
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        assertEquals(LocalDateTime.of(2025, 5, 7, 13, 30), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(90), epic.getDuration());
+        assertFalse(epic.replaceSubtask(new Subtask(4, "unknown", "desc", Status.DONE, 1, null, null)), "Чужая подзадача не должна заменяться");
+        assertEquals(2, epic.getSubtasks().size());
+    }
+
+    @Test
+    public void shouldKeepSubtaskOrderOnReplaceAndRemove() {
+        Epic epic = new Epic("test epic", "epic desc");
+        Subtask first = new Subtask(2, "subtask 1", "subtask desc", Status.NEW, 1, null, null);
+        Subtask second = new Subtask(3, "subtask 2", "subtask desc", Status.NEW, 1, null, null);
+        Subtask third = new Subtask(4, "subtask 3", "subtask desc", Status.NEW, 1, null, null);
+        epic.setSubtasks(List.of(first, second, third));
+        List<Subtask> before = epic.getSubtasks();
+
+        Subtask updated = new Subtask(3, "subtask 2 v2", "subtask desc", Status.DONE, 1, null, null);
+        assertTrue(epic.replaceSubtask(updated));
+        assertEquals("subtask 2 v2", epic.getSubtasks().get(1).getName(), "Новая версия должна остаться на месте прежней");
+        epic.removeSubtask(new Subtask(2, "другое имя", "desc", Status.NEW, 1, null, null));
+        assertEquals(List.of(updated, third), epic.getSubtasks(), "Подзадача должна удаляться по id");
+        assertEquals(3, before.size(), "Полученный ранее список не должен меняться");
+        assertThrows(UnsupportedOperationException.class, () -> epic.getSubtasks().add(first));
+    }
+}
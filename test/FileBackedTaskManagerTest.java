@@ -1,18 +1,41 @@
 import model.Epic;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
 import model.Status;
+import service.BatchOutcome;
+import service.BinarySnapshot;
+import service.Durability;
 import service.FileBackedTaskManager;
+import service.FlushPolicy;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import service.ManagerSaveException;
+import service.SaveMode;
+import service.SnapshotFormat;
+import service.StorageConfig;
+import service.TaskJournal;
+import service.TaskPartitions;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     File tempFile;
@@ -83,4 +106,499 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
         }, "Должно выбрасываться исключение при чтении некорректного файла");
     }
 
+    @Test
+    public void shouldRoundTripCommasAndLineBreaksInText() throws IOException {
+        try (FileWriter writer = new FileWriter(tempFile, StandardCharsets.UTF_8)) {
+            // файл, записанный до экранирования: обратная косая черта перед обычным символом остаётся как есть
+            writer.write("id,type,name,status,description,epic\n1,TASK,task,NEW,C:\\temp,30,2025-05-05T13:00\n");
+        }
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals("C:\\temp", loaded.getTasks().get(1).getDescription());
+
+        loaded.updateTask(new Task(1, "a,b\\n", "c\r\nd,", Status.NEW, Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 13, 0)));
+        assertEquals(2, Files.readAllLines(tempFile.toPath()).size(), "Задача должна занимать одну строку файла");
+        Task reloaded = FileBackedTaskManager.loadFromFile(tempFile).getTasks().get(1);
+        assertEquals("a,b\\n", reloaded.getName());
+        assertEquals("c\r\nd,", reloaded.getDescription());
+        assertEquals(Duration.ofMinutes(30), reloaded.getDuration());
+    }
+
+    @Test
+    public void shouldReplayJournalOnLoad() throws IOException {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.JOURNAL);
+        Task task = new Task("Task 1", "Desc 1", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0));
+        journaled.addTask(task);
+        Epic epic = new Epic("Epic 1", "Epic Desc");
+        journaled.addEpic(epic);
+        Subtask subtask = new Subtask("Subtask 1", "Subtask Desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 6, 13, 0));
+        journaled.addSubtask(subtask);
+        journaled.updateTask(new Task(task.getId(), "Task 1", "updated", Status.IN_PROGRESS, Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 13, 0)));
+        Task removed = new Task("Task 2", "Desc 2", Status.NEW, null, null);
+        journaled.addTask(removed);
+        journaled.deleteTask(removed);
+
+        assertEquals(0, Files.size(tempFile.toPath()), "В режиме журнала снимок не должен переписываться");
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, SaveMode.JOURNAL);
+        assertEquals(1, loaded.getTasks().size());
+        assertEquals("updated", loaded.getTasks().get(task.getId()).getDescription());
+        assertEquals(Status.DONE, loaded.getEpics().get(epic.getId()).getStatus(), "Статус эпика должен восстановиться по подзадачам");
+        assertEquals(1, loaded.getSubtasks().size());
+
+        Task next = new Task("Task 3", "Desc 3", Status.NEW, null, null);
+        loaded.addTask(next);
+        assertEquals(5, next.getId(), "Счётчик id должен продолжаться после максимального id из журнала");
+    }
+
+    @Test
+    public void loadShouldCutOffTornJournalTail() throws IOException {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.JOURNAL);
+        journaled.addTask(new Task("Task 1", "Desc 1", Status.NEW, null, null));
+        // сбой посреди записи второй задачи
+        Path journalPath = TaskJournal.pathFor(tempFile.toPath());
+        Files.writeString(journalPath, "PUT,2,TAS", StandardOpenOption.APPEND);
+
+        FileBackedTaskManager recovered = FileBackedTaskManager.loadFromFile(tempFile, SaveMode.JOURNAL);
+        assertEquals(1, recovered.getTasks().size());
+        recovered.addTask(new Task("Task 2", "Desc 2", Status.NEW, null, null));
+        recovered.addTask(new Task("Task 3", "Desc 3", Status.NEW, null, null));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, SaveMode.JOURNAL);
+        assertEquals(3, loaded.getTasks().size(), "Записи после сбоя не должны склеиваться с недописанной строкой");
+        assertEquals(3, Files.readAllLines(journalPath).size());
+    }
+
+    @Test
+    public void saveShouldTruncateJournal() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.JOURNAL);
+        journaled.addTask(new Task("Task 1", "Desc 1", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0)));
+        assertTrue(Files.exists(TaskJournal.pathFor(tempFile.toPath())));
+
+        journaled.save();
+        assertFalse(Files.exists(TaskJournal.pathFor(tempFile.toPath())), "После записи снимка журнал должен быть очищен");
+        assertEquals(1, FileBackedTaskManager.loadFromFile(tempFile).getTasks().size());
+    }
+
+    @Test
+    public void loadShouldNotReplayStaleJournalOverNewerSnapshot() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.JOURNAL);
+        Task task = new Task("Task 1", "Desc 1", Status.NEW, null, null);
+        journaled.addTask(task);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(SaveMode.JOURNAL, loaded.getSaveMode(), "Режим должен определяться по файлу журнала");
+        loaded.deleteTask(loaded.getTaskById(task.getId()));
+        assertEquals(0, FileBackedTaskManager.loadFromFile(tempFile).getTasks().size(), "Удалённая задача не должна вернуться");
+
+        journaled.addTask(new Task("Task 2", "Desc 2", Status.NEW, null, null));
+        FileBackedTaskManager snapshot = FileBackedTaskManager.loadFromFile(tempFile, SaveMode.SNAPSHOT);
+        assertFalse(Files.exists(TaskJournal.pathFor(tempFile.toPath())), "В режиме снимка журнал переносится в снимок при загрузке");
+        snapshot.deleteTask(snapshot.getTasks().values().iterator().next());
+        assertEquals(0, FileBackedTaskManager.loadFromFile(tempFile).getTasks().size());
+    }
+
+    @Test
+    public void groupCommitShouldWriteEverythingOnFlush() {
+        FileBackedTaskManager grouped = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.JOURNAL,
+                FlushPolicy.GROUP_COMMIT, Duration.ofSeconds(10));
+        for (int i = 0; i < 10; i++) {
+            grouped.addTask(new Task("Task " + i, "Desc", Status.NEW, Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 13, 0).plusHours(i)));
+        }
+        assertFalse(Files.exists(TaskJournal.pathFor(tempFile.toPath())), "До окончания окна журнал не должен записываться");
+
+        grouped.flush();
+        assertEquals(10, FileBackedTaskManager.loadFromFile(tempFile).getTasks().size());
+        grouped.close();
+    }
+
+    @Test
+    public void periodicFlushShouldPersistOnClose() {
+        FileBackedTaskManager periodic = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.SNAPSHOT,
+                FlushPolicy.PERIODIC, Duration.ofMinutes(1));
+        Epic epic = new Epic("Epic 1", "Epic Desc");
+        periodic.addEpic(epic);
+        periodic.addSubtask(new Subtask("Subtask 1", "Subtask Desc", Status.NEW, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0)));
+        periodic.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(1, loaded.getEpics().size());
+        assertEquals(1, loaded.getSubtasks().size());
+    }
+
+    @Test
+    public void shouldSaveAndLoadBinarySnapshot() throws IOException {
+        FileBackedTaskManager binary = new FileBackedTaskManager(tempFile.getAbsolutePath(),
+                StorageConfig.defaults().withSnapshotFormat(SnapshotFormat.BINARY));
+        Task task = new Task("Task 1", "Общее описание", Status.IN_PROGRESS, Duration.ofMinutes(90), LocalDateTime.of(2025, 5, 5, 13, 0));
+        binary.addTask(task);
+        binary.addTask(new Task("Task 2", "Общее описание", Status.NEW, null, null));
+        Epic epic = new Epic("Epic 1", "Epic Desc");
+        binary.addEpic(epic);
+        binary.addSubtask(new Subtask("Subtask 1", "Subtask Desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 6, 13, 0)));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(SnapshotFormat.BINARY, loaded.getSnapshotFormat(), "Формат должен определяться по содержимому файла");
+        assertEquals(2, loaded.getTasks().size());
+        Task loadedTask = loaded.getTasks().get(task.getId());
+        assertEquals("Общее описание", loadedTask.getDescription());
+        assertEquals(Status.IN_PROGRESS, loadedTask.getStatus());
+        assertEquals(task.getStartTime(), loadedTask.getStartTime());
+        assertEquals(task.getDuration(), loadedTask.getDuration());
+        assertNull(loaded.getTasks().get(2).getStartTime());
+        assertEquals(Status.DONE, loaded.getEpics().get(epic.getId()).getStatus());
+
+        File csv = File.createTempFile("export", ".csv");
+        loaded.exportCsv(csv.toPath());
+        FileBackedTaskManager imported = FileBackedTaskManager.loadFromFile(csv);
+        assertEquals(SnapshotFormat.CSV, imported.getSnapshotFormat());
+        assertEquals(2, imported.getTasks().size());
+        assertEquals(1, imported.getSubtasks().size());
+    }
+
+    @Test
+    public void binarySnapshotShouldKeepStartTimeWithNanos() {
+        FileBackedTaskManager binary = new FileBackedTaskManager(tempFile.getAbsolutePath(),
+                StorageConfig.defaults().withSnapshotFormat(SnapshotFormat.BINARY));
+        LocalDateTime start = LocalDateTime.of(2025, 5, 5, 13, 0, 17, 123_456_789);
+        Task task = new Task("Task 1", "Desc 1", Status.NEW, Duration.ofMinutes(30), start);
+        binary.addTask(task);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(start, loaded.getTasks().get(task.getId()).getStartTime(), "Секунды и наносекунды начала не должны теряться");
+    }
+
+    @Test
+    public void shouldLoadBinarySnapshotOfFirstVersion() throws IOException {
+        // версия 1: начало хранится только в секундах, без поля наносекунд
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(BinarySnapshot.MAGIC);
+            out.writeInt(1);
+            out.writeInt(2);
+            for (String value : List.of("Task 1", "Desc 1")) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeByte(TaskType.TASK.ordinal());
+            out.writeByte(Status.IN_PROGRESS.ordinal());
+            out.writeInt(0);
+            out.writeInt(1);
+            out.writeInt(45);
+            out.writeLong(LocalDateTime.of(2025, 5, 5, 13, 0).toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(-1);
+        }
+        Files.write(tempFile.toPath(), bytes.toByteArray());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        Task task = loaded.getTasks().get(1);
+        assertEquals("Desc 1", task.getDescription());
+        assertEquals(Status.IN_PROGRESS, task.getStatus());
+        assertEquals(Duration.ofMinutes(45), task.getDuration());
+        assertEquals(LocalDateTime.of(2025, 5, 5, 13, 0), task.getStartTime());
+    }
+
+    @Test
+    public void loadedManagerShouldRestoreScheduleAndEpics() {
+        Epic epic = new Epic("Epic 1", "Epic Desc");
+        taskManager.addEpic(epic);
+        Subtask subtask1 = new Subtask("Subtask 1", "Desc", Status.NEW, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 6, 13, 0));
+        Subtask subtask2 = new Subtask("Subtask 2", "Desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 7, 13, 0));
+        Task task = new Task("Task 1", "Desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0));
+        taskManager.addSubtask(subtask1);
+        taskManager.addSubtask(subtask2);
+        taskManager.addTask(task);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(List.of(task, subtask1, subtask2), loaded.getPrioritizedTasks(), "Расписание должно восстановиться после загрузки");
+        assertTrue(loaded.isTaskOverlapping(new Task("Task 2", "Desc", Status.NEW, Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 13, 30))),
+                "Проверка пересечений должна учитывать загруженные задачи");
+
+        Epic loadedEpic = loaded.getEpics().get(epic.getId());
+        assertEquals(Status.IN_PROGRESS, loadedEpic.getStatus());
+        assertEquals(LocalDateTime.of(2025, 5, 6, 13, 0), loadedEpic.getStartTime());
+        loaded.addSubtask(new Subtask("Subtask 3", "Desc", Status.NEW, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 8, 13, 0)));
+        assertEquals(3, loadedEpic.getSubtasks().size(), "В загруженный эпик должно быть можно добавить подзадачу");
+    }
+
+    @Test
+    public void batchShouldBeJournaledAndReplayed() throws IOException {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.JOURNAL);
+        Epic epic = new Epic("Epic 1", "Epic Desc");
+        journaled.addEpic(epic);
+        Subtask subtask1 = new Subtask("Subtask 1", "Desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 6, 13, 0));
+        Subtask subtask2 = new Subtask("Subtask 2", "Desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 7, 13, 0));
+        Task task = new Task("Task 1", "Desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 6, 13, 30));
+        List<BatchOutcome> outcomes = journaled.addAll(List.of(subtask1, subtask2, task));
+        assertEquals(List.of(BatchOutcome.APPLIED, BatchOutcome.APPLIED, BatchOutcome.OVERLAPPING), outcomes);
+        journaled.deleteAll(List.of(subtask2));
+
+        List<String> records = Files.readAllLines(TaskJournal.pathFor(tempFile.toPath()));
+        assertEquals(4, records.size(), "В журнале должны быть только эпик, две принятые подзадачи и одно удаление");
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, SaveMode.JOURNAL);
+        assertEquals(1, loaded.getSubtasks().size());
+        assertEquals(Status.DONE, loaded.getEpics().get(epic.getId()).getStatus());
+    }
+
+    @Test
+    public void statusIndexShouldBeRestoredOnLoad() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(tempFile.getAbsolutePath());
+        Epic epic = new Epic("Epic 1", "Epic Desc");
+        manager.addEpic(epic);
+        manager.addSubtask(new Subtask("Subtask 1", "Desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 6, 13, 0)));
+        manager.addTask(new Task("Task 1", "Desc", Status.IN_PROGRESS, null, null));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(1, loaded.getStatusCount(TaskType.EPIC, Status.DONE), "Статус эпика в индексе должен быть пересчитан при загрузке");
+        assertEquals(1, loaded.getStatusCount(TaskType.SUBTASK, Status.DONE));
+        assertEquals(1, loaded.getStatusCount(Status.IN_PROGRESS));
+    }
+
+    @Test
+    public void shouldSearchLoadedTasks() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(tempFile.getAbsolutePath());
+        Epic epic = new Epic("Epic 1", "Epic Desc");
+        manager.addEpic(epic);
+        Task task = new Task("Task 1", "Desc", Status.IN_PROGRESS, null, null);
+        manager.addTask(task);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(List.of(loaded.getTasks().get(task.getId())), loaded.search("task", 10),
+                "Индекс слов должен быть построен при загрузке");
+        assertEquals(List.of(loaded.getEpics().get(epic.getId())), loaded.search("epic", 10));
+    }
+
+    @Test
+    public void rewriteShouldDropDescriptionsOfDeletedTasks() throws IOException {
+        StorageConfig binary = StorageConfig.defaults().withSnapshotFormat(SnapshotFormat.BINARY);
+        FileBackedTaskManager writer = new FileBackedTaskManager(tempFile.getAbsolutePath(), binary);
+        for (int i = 1; i <= 20; i++) {
+            writer.addTask(new Task("Task " + i, "Подробное описание задачи " + i, Status.NEW, null, null));
+        }
+
+        try (FileBackedTaskManager lazy = FileBackedTaskManager.loadFromFile(tempFile, binary.withLazyDescriptions(4))) {
+            Task deleted = lazy.getTaskById(3);
+            lazy.deleteTask(deleted);
+            lazy.updateTask(new Task(5, "Task 5", "Новое описание", Status.DONE, null, null));
+
+            String file = new String(Files.readAllBytes(tempFile.toPath()), StandardCharsets.UTF_8);
+            assertFalse(file.contains("задачи 3"), "Описание удалённой задачи не должно переноситься в новый снимок");
+            assertFalse(file.contains("задачи 5"), "Заменённое описание не должно переноситься в новый снимок");
+            assertEquals("Подробное описание задачи 3", deleted.getDescription(), "Удалённая задача должна сохранить описание");
+            for (int i = 1; i <= 20; i++) {
+                if (i != 3 && i != 5) {
+                    Task task = lazy.getTasks().get(i);
+                    assertNotNull(task.getLazyDescription(), "Перезапись не должна загружать описания в память");
+                    assertEquals("Подробное описание задачи " + i, task.getDescription());
+                }
+            }
+        }
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(19, reloaded.getTasks().size());
+        assertEquals("Новое описание", reloaded.getTasks().get(5).getDescription());
+        assertEquals("Подробное описание задачи 20", reloaded.getTasks().get(20).getDescription());
+    }
+
+    @Test
+    public void lazyDescriptionsShouldBeReadFromFileAndSurviveRewrite() {
+        StorageConfig binary = StorageConfig.defaults().withSnapshotFormat(SnapshotFormat.BINARY);
+        FileBackedTaskManager writer = new FileBackedTaskManager(tempFile.getAbsolutePath(), binary);
+        for (int i = 1; i <= 20; i++) {
+            writer.addTask(new Task("Task " + i, "Подробное описание задачи " + i, Status.NEW, Duration.ofMinutes(30),
+                    LocalDateTime.of(2025, 5, 5, 0, 0).plusHours(i)));
+        }
+
+        try (FileBackedTaskManager lazy = FileBackedTaskManager.loadFromFile(tempFile, binary.withLazyDescriptions(4))) {
+            Task first = lazy.getTaskById(1);
+            for (int i = 1; i <= 20; i++) {
+                assertEquals("Подробное описание задачи " + i, lazy.getTaskById(i).getDescription(), "Описание должно читаться из файла");
+            }
+            assertEquals(List.of(lazy.getTaskById(7)), lazy.search("задачи 7", 10), "Индекс по словам должен строиться и для ленивых описаний");
+
+            // перезапись снимка сдвигает строки в файле - ссылки должны перейти на новое место
+            lazy.deleteTask(first);
+            lazy.addTask(new Task("Новая", "Новое описание", Status.NEW, null, null));
+            assertEquals("Подробное описание задачи 1", first.getDescription(), "Удалённая задача должна сохранить описание");
+            for (int i = 2; i <= 20; i++) {
+                assertEquals("Подробное описание задачи " + i, lazy.getTaskById(i).getDescription());
+            }
+        }
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(20, reloaded.getTasks().size());
+        assertEquals("Подробное описание задачи 5", reloaded.getTasks().get(5).getDescription());
+        assertEquals("Новое описание", reloaded.getTasks().get(21).getDescription());
+        assertThrows(IllegalArgumentException.class, () -> StorageConfig.defaults().withLazyDescriptions(0));
+    }
+
+    @Test
+    public void partitionedModeShouldRewriteOnlyChangedSegments() throws IOException {
+        StorageConfig config = StorageConfig.defaults().withSaveMode(SaveMode.PARTITIONED);
+        FileBackedTaskManager manager = new FileBackedTaskManager(tempFile.getAbsolutePath(), config);
+        Epic epic = new Epic("Epic", "Epic desc");
+        manager.addEpic(epic);
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            batch.add(new Task("Task " + i, "Desc", Status.NEW, null, null));
+        }
+        manager.addAll(batch);
+        Subtask subtask = new Subtask("Subtask", "Desc", Status.DONE, epic.getId(), null, null);
+        manager.addSubtask(subtask);
+
+        Path directory = TaskPartitions.pathFor(tempFile.toPath());
+        assertEquals(Set.of(0, 1, 2), new TaskPartitions(directory).stored(), "Задачи должны разойтись по сегментам диапазонов id");
+
+        List<String> written = new ArrayList<>();
+        manager.setStorageListener((target, bytes, nanos) -> written.add(target));
+        manager.updateTask(new Task(1500, "Renamed", "Desc", Status.DONE, null, null));
+        assertEquals(List.of("partition"), written, "Изменение должно переписать только один сегмент");
+
+        List<Task> lastSegment = new ArrayList<>();
+        for (Task task : manager.getTasks().values()) {
+            if (task.getId() >= 2 * TaskPartitions.SIZE && task.getId() != subtask.getId()) {
+                lastSegment.add(task);
+            }
+        }
+        manager.deleteAll(lastSegment);
+        assertEquals(Set.of(0, 1, 2), new TaskPartitions(directory).stored(), "Сегмент с подзадачей ещё не пуст");
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(SaveMode.PARTITIONED, loaded.getSaveMode(), "Режим должен определяться по каталогу сегментов");
+        assertEquals(manager.getTasks().size(), loaded.getTasks().size());
+        assertEquals("Renamed", loaded.getTasks().get(1500).getName());
+        assertEquals(Status.DONE, loaded.getEpics().get(epic.getId()).getStatus(), "Эпик должен собраться с подзадачей из другого сегмента");
+
+        loaded.clearEpics();
+        loaded.deleteTask(loaded.getTasks().get(2 * TaskPartitions.SIZE - 1));
+        assertEquals(Set.of(0, 1), new TaskPartitions(directory).stored(), "Опустевший сегмент должен удаляться");
+        loaded.addTask(new Task("Task after", "Desc", Status.NEW, null, null));
+        assertEquals(loaded.getTasks().size(), FileBackedTaskManager.loadFromFile(tempFile).getTasks().size());
+    }
+
+    @Test
+    public void everyDurabilityModeShouldWriteLoadableFiles(@TempDir Path dir) throws IOException {
+        for (Durability durability : Durability.values()) {
+            for (SaveMode saveMode : SaveMode.values()) {
+                File file = dir.resolve("durability-" + durability + "-" + saveMode + ".csv").toFile();
+                StorageConfig config = StorageConfig.defaults().withSaveMode(saveMode).withDurability(durability);
+                try (FileBackedTaskManager manager = new FileBackedTaskManager(file.getPath(), config)) {
+                    manager.addTask(new Task("Task 1", "Desc", Status.NEW, Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 10, 0)));
+                    manager.addTask(new Task("Task 2", "Desc", Status.DONE, null, null));
+                    manager.deleteTask(manager.getTaskById(1));
+                }
+
+                try (FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file, config)) {
+                    assertEquals(1, loaded.getTasks().size(), durability + "/" + saveMode + ": состояние должно восстановиться");
+                    assertEquals(Status.DONE, loaded.getTasks().get(2).getStatus());
+                }
+                try (DirectoryStream<Path> temps = Files.newDirectoryStream(dir, file.getName() + ".*.tmp")) {
+                    assertFalse(temps.iterator().hasNext(), "Временный файл должен заменить снимок, а не остаться рядом");
+                }
+            }
+        }
+        assertEquals(Durability.ATOMIC, StorageConfig.defaults().getDurability(), "По умолчанию снимок заменяется атомарно");
+    }
+
+    @Test
+    public void concurrentSavesShouldLeaveLatestSnapshot() throws Exception {
+        FileBackedTaskManager manager = new FileBackedTaskManager(tempFile.getAbsolutePath(),
+                StorageConfig.defaults().withDurability(Durability.ATOMIC));
+        Thread saver = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                manager.save();
+            }
+        });
+        saver.start();
+        for (int i = 0; i < 200; i++) {
+            manager.addTask(new Task("Task " + i, "Desc", Status.NEW, null, null));
+        }
+        saver.join();
+
+        assertEquals(200, FileBackedTaskManager.loadFromFile(tempFile).getTasks().size(),
+                "Снимок, собранный раньше, не должен записываться поверх более нового");
+    }
+
+    @Test
+    public void backgroundCompactionShouldReplaceJournalWithSnapshot() throws Exception {
+        StorageConfig config = StorageConfig.defaults().withSaveMode(SaveMode.JOURNAL)
+                .withCompaction(0, 20, Duration.ofMillis(5));
+        FileBackedTaskManager compacted = new FileBackedTaskManager(tempFile.getAbsolutePath(), config);
+        for (int i = 0; i < 100; i++) {
+            compacted.addTask(new Task("Task " + i, "Desc", Status.NEW, null, null));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (compacted.getCheckpointLatency().getCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(compacted.getCheckpointLatency().getCount() > 0, "Превышение порога должно запустить контрольную точку");
+        for (int i = 100; i < 110; i++) {
+            compacted.addTask(new Task("Task " + i, "Desc", Status.NEW, null, null));
+        }
+        compacted.close();
+
+        TaskJournal journal = new TaskJournal(TaskJournal.pathFor(tempFile.toPath()));
+        assertTrue(journal.readRecords().size() < 100, "Записи, вошедшие в снимок, должны удаляться из журнала");
+        assertEquals(110, FileBackedTaskManager.loadFromFile(tempFile, SaveMode.JOURNAL).getTasks().size(),
+                "Снимок вместе с остатком журнала должен содержать все задачи");
+    }
+
+    @Test
+    public void backgroundCompactionShouldNotReorderGroupCommits() {
+        StorageConfig config = StorageConfig.defaults().withSaveMode(SaveMode.JOURNAL)
+                .withFlushPolicy(FlushPolicy.GROUP_COMMIT, Duration.ofMillis(1))
+                .withCompaction(0, 10, Duration.ofMillis(1));
+        FileBackedTaskManager compacted = new FileBackedTaskManager(tempFile.getAbsolutePath(), config);
+        for (int i = 1; i <= 300; i++) {
+            compacted.addTask(new Task("Task " + i, "Desc", Status.NEW, null, null));
+            compacted.updateTask(new Task(i, "Task " + i, "Desc", Status.DONE, null, null));
+            if (i % 50 == 0) {
+                compacted.clearTasks();
+            }
+        }
+        compacted.addTask(new Task("Last", "Desc", Status.DONE, null, null));
+        compacted.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, SaveMode.JOURNAL);
+        assertEquals(1, loaded.getTasks().size(), "Старые записи не должны применяться поверх более нового снимка");
+        assertEquals(Status.DONE, loaded.getTasks().get(301).getStatus());
+    }
+
+    @Test
+    public void saveShouldKeepChangesMadeDuringCheckpoint() throws Exception {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.JOURNAL);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 500; i++) {
+                journaled.addTask(new Task("Task " + i, "Desc", Status.NEW, null, null));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            journaled.save();
+        }
+        writer.join();
+
+        assertEquals(500, FileBackedTaskManager.loadFromFile(tempFile, SaveMode.JOURNAL).getTasks().size(),
+                "Изменения, сделанные во время записи снимка, не должны теряться");
+        assertTrue(journaled.getCheckpointLatency().getCount() > 0);
+    }
+
+    @Test
+    public void loadShouldReplayLeftoverJournalSegments() throws IOException {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile.getAbsolutePath(), SaveMode.JOURNAL);
+        Task task = new Task("Task 1", "Desc", Status.NEW, null, null);
+        journaled.addTask(task);
+        journaled.save();
+        // сбой после записи снимка, но до удаления сегмента: сегмент повторяет уже сохранённое
+        Path journalPath = TaskJournal.pathFor(tempFile.toPath());
+        Files.writeString(journalPath.resolveSibling(journalPath.getFileName() + ".0"), "PUT," + journaled.toString(task));
+        journaled.updateTask(new Task(task.getId(), "Task 1", "updated", Status.DONE, null, null));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, SaveMode.JOURNAL);
+        assertEquals(Status.DONE, loaded.getTaskById(task.getId()).getStatus(), "Сегменты применяются раньше текущего журнала");
+        assertEquals(Set.of(0), new TaskJournal(journalPath).segments());
+    }
 }
@@ -0,0 +1,193 @@
+import http.HttpTaskServer;
+import http.TaskJson;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.FileBackedTaskManager;
+import service.InMemoryTaskManager;
+import service.Managers;
+import service.SaveMode;
+import service.TaskManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpTaskServerTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 5, 5, 9, 0);
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpTaskServer server;
+
+    private TaskManager start(TaskManager manager) throws IOException {
+        server = new HttpTaskServer(manager, 0);
+        server.start();
+        return manager;
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void shouldCreateGetUpdateAndDeleteTask() throws Exception {
+        TaskManager manager = start(new InMemoryTaskManager());
+        Task task = new Task("Task \"1\"", "Описание\nв две строки", Status.NEW, Duration.ofMinutes(30), BASE);
+
+        HttpResponse<String> created = send("POST", "/tasks", TaskJson.toJson(task));
+        assertEquals(201, created.statusCode());
+        Task stored = TaskJson.fromJson(created.body(), TaskType.TASK);
+        assertTrue(stored.getId() > 0, "Созданной задаче должен быть назначен id");
+        assertEquals("Описание\nв две строки", manager.getTaskView().iterator().next().getDescription());
+
+        HttpResponse<String> loaded = send("GET", "/tasks/" + stored.getId(), null);
+        assertEquals(200, loaded.statusCode());
+        Task fromServer = TaskJson.fromJson(loaded.body(), TaskType.TASK);
+        assertEquals("Task \"1\"", fromServer.getName());
+        assertEquals(Duration.ofMinutes(30), fromServer.getDuration());
+        assertEquals(BASE, fromServer.getStartTime());
+        assertEquals(1, manager.getHistory().size(), "Просмотр по id должен попадать в историю");
+
+        Task updated = new Task(stored.getId(), "Task 1", "desc", Status.DONE, Duration.ofMinutes(30), BASE);
+        assertEquals(201, send("POST", "/tasks", TaskJson.toJson(updated)).statusCode());
+        assertEquals(Status.DONE, manager.getTaskView().iterator().next().getStatus());
+        assertEquals(1, manager.getHistory().size(), "Обновление не должно попадать в историю");
+
+        assertEquals(200, send("DELETE", "/tasks/" + stored.getId(), null).statusCode());
+        assertTrue(manager.getTaskView().isEmpty());
+        assertEquals(404, send("DELETE", "/tasks/" + stored.getId(), null).statusCode());
+    }
+
+    @Test
+    public void shouldMapErrorsToStatusCodes() throws Exception {
+        start(new InMemoryTaskManager());
+        send("POST", "/tasks", TaskJson.toJson(new Task("first", "desc", Status.NEW, Duration.ofMinutes(60), BASE)));
+
+        Task overlapping = new Task("second", "desc", Status.NEW, Duration.ofMinutes(60), BASE.plusMinutes(30));
+        assertEquals(406, send("POST", "/tasks", TaskJson.toJson(overlapping)).statusCode(), "Пересечение по времени - 406");
+        assertEquals(404, send("GET", "/tasks/100", null).statusCode());
+        assertEquals(404, send("POST", "/tasks", TaskJson.toJson(new Task(100, "missing", "desc", Status.NEW, null, null))).statusCode(),
+                "Обновление несуществующей задачи - 404");
+        assertEquals(400, send("POST", "/tasks", "{\"name\":").statusCode(), "Неверный JSON - 400");
+        assertEquals(400, send("POST", "/tasks", "[".repeat(10_000)).statusCode(), "Глубокая вложенность - 400, а не переполнение стека");
+        assertEquals(400, send("GET", "/tasks/abc", null).statusCode());
+        assertEquals(400, send("POST", "/tasks", "{\"id\":4294967297,\"name\":\"first\",\"status\":\"DONE\"}").statusCode(),
+                "id за пределами int не должен указывать на другую задачу");
+        assertEquals(400, send("POST", "/subtasks", "{\"name\":\"sub\",\"epicId\":-4294967295}").statusCode());
+        assertEquals(400, send("POST", "/tasks", "{\"name\":\"long\",\"duration\":" + Long.MAX_VALUE / 60 + "}").statusCode(),
+                "Слишком большая длительность - 400");
+        assertEquals(400, send("POST", "/tasks", "{\"name\":\"negative\",\"duration\":-5}").statusCode());
+        assertEquals(400, send("POST", "/tasks",
+                "{\"name\":\"late\",\"duration\":60,\"startTime\":\"+999999999-12-31T23:30\"}").statusCode(),
+                "Время окончания за пределами LocalDateTime - 400");
+        assertEquals(404, send("GET", "/tasks/1/2/3", null).statusCode());
+        assertEquals(405, send("PUT", "/tasks", "{}").statusCode());
+        HttpResponse<String> error = send("GET", "/subtasks/5", null);
+        assertEquals("{\"error\":\"Подзадача с id 5 не найдена\"}", error.body());
+    }
+
+    @Test
+    public void shouldServeEpicsSubtasksHistoryAndPrioritized() throws Exception {
+        TaskManager manager = start(new InMemoryTaskManager());
+        Task epic = TaskJson.fromJson(send("POST", "/epics", "{\"name\":\"Epic\",\"description\":\"desc\"}").body(), TaskType.EPIC);
+        Subtask late = new Subtask("late", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(30), BASE.plusHours(2));
+        Subtask early = new Subtask("early", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(30), BASE);
+        assertEquals(201, send("POST", "/subtasks", TaskJson.toJson(late)).statusCode());
+        assertEquals(201, send("POST", "/subtasks", TaskJson.toJson(early)).statusCode());
+        Subtask orphan = new Subtask("orphan", "desc", Status.NEW, 100, null, null);
+        assertEquals(404, send("POST", "/subtasks", TaskJson.toJson(orphan)).statusCode(), "Подзадача без эпика - 404");
+
+        List<Task> subtasks = TaskJson.listFromJson(send("GET", "/epics/" + epic.getId() + "/subtasks", null).body(), TaskType.SUBTASK);
+        assertEquals(List.of("late", "early"), subtasks.stream().map(Task::getName).toList());
+        assertEquals(404, send("GET", "/epics/100/subtasks", null).statusCode());
+        assertTrue(manager.getHistory().isEmpty(), "Список подзадач эпика не должен попадать в историю");
+
+        List<Task> prioritized = TaskJson.listFromJson(send("GET", "/prioritized", null).body(), TaskType.TASK);
+        assertEquals(List.of("early", "late"), prioritized.stream().map(Task::getName).toList());
+        assertInstanceOf(Subtask.class, prioritized.get(0), "Тип элемента списка берётся из поля type");
+
+        send("GET", "/epics/" + epic.getId(), null);
+        String history = send("GET", "/history", null).body();
+        assertEquals(1, TaskJson.listFromJson(history, TaskType.TASK).size());
+        assertTrue(history.contains("\"status\":\"IN_PROGRESS\""), "Статус эпика отдаётся вычисленным по подзадачам");
+
+        assertEquals(200, send("DELETE", "/epics", null).statusCode());
+        assertEquals("[]", send("GET", "/subtasks", null).body(), "Удаление эпиков удаляет и подзадачи");
+    }
+
+    @Test
+    public void fileBackedManagerShouldReloadFreeTextPostedThroughApi(@TempDir Path dir) throws Exception {
+        for (SaveMode saveMode : SaveMode.values()) {
+            File file = dir.resolve(saveMode + ".csv").toFile();
+            try (FileBackedTaskManager manager = new FileBackedTaskManager(file.getPath(), saveMode)) {
+                start(manager);
+                Task task = new Task("Купить молоко, хлеб", "Описание\nв две строки, с запятой и \\n", Status.NEW, null, null);
+                HttpResponse<String> created = send("POST", "/tasks", TaskJson.toJson(task));
+                assertEquals(201, created.statusCode());
+                String epic = send("POST", "/epics", "{\"name\":\"Эпик,\\r\\n\",\"description\":\"\\\\\"}").body();
+                assertEquals(201, send("POST", "/subtasks", TaskJson.toJson(new Subtask("a,b", "c\nd", Status.DONE,
+                        TaskJson.fromJson(epic, TaskType.EPIC).getId(), null, null))).statusCode());
+                stop();
+            }
+
+            try (FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file)) {
+                Task task = loaded.getTaskView().iterator().next();
+                assertEquals("Купить молоко, хлеб", task.getName(), saveMode + ": запятая в названии не должна делить строку");
+                assertEquals("Описание\nв две строки, с запятой и \\n", task.getDescription());
+                Epic epic = loaded.getEpicView().iterator().next();
+                assertEquals("Эпик,\r\n", epic.getName());
+                assertEquals("\\", epic.getDescription());
+                Subtask subtask = loaded.getSubtaskView().iterator().next();
+                assertEquals("a,b", subtask.getName());
+                assertEquals("c\nd", subtask.getDescription());
+                assertEquals(Status.DONE, epic.getStatus());
+            }
+        }
+    }
+
+    @Test
+    public void shouldHandleManyConcurrentClients() throws Exception {
+        start(Managers.getConcurrent());
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Task task = new Task("Task " + i, "desc", Status.NEW, Duration.ofMinutes(1), BASE.plusMinutes(i));
+            responses.add(client.sendAsync(request("POST", "/tasks", TaskJson.toJson(task)), HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(201, response.get().statusCode());
+        }
+
+        List<Task> tasks = TaskJson.listFromJson(send("GET", "/tasks", null).body(), TaskType.TASK);
+        assertEquals(2_000, tasks.size(), "Потоковый ответ должен содержать все задачи");
+        List<Task> prioritized = TaskJson.listFromJson(send("GET", "/prioritized", null).body(), TaskType.TASK);
+        assertEquals(BASE, prioritized.get(0).getStartTime());
+        assertEquals(BASE.plusMinutes(1_999), prioritized.get(1_999).getStartTime());
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        return client.send(request(method, path, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest request(String method, String path, String body) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
@@ -4,6 +4,7 @@ import model.Task;
 import model.Status;
 import org.junit.jupiter.api.Test;
 import service.InMemoryTaskManager;
+import service.TaskSnapshot;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -64,6 +65,22 @@ public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager
         assertEquals(1, taskManager.getTasks().size(), "Задача с пересечением по времени не должна быть добавлена");
     }
 
+    @Test
+    public void shouldReturnConflictingTasks() {
+        Task task1 = new Task("Task 1", "desc", Status.NEW,
+                Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0));
+        Task task2 = new Task("Task 2", "desc", Status.NEW,
+                Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 14, 0));
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+        Task probe = new Task("Task 3", "desc", Status.NEW,
+                Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 30));
+
+        assertEquals(List.of(task1, task2), taskManager.getOverlappingTasks(probe), "Должны вернуться обе пересекающиеся задачи");
+        taskManager.deleteTask(task1);
+        assertEquals(List.of(task2), taskManager.getOverlappingTasks(probe), "Удалённая задача не должна считаться пересечением");
+    }
+
     @Test
     public void getPrioritizedTasksShouldReturnSortedTasks() {
         Task task1 = new Task("Task 1", "desc", Status.NEW,
@@ -93,4 +110,63 @@ public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager
         taskManager.updateTask(updatedTask2);
         assertEquals(0, taskManager.getPrioritizedTasks().size(), "В списке не должно остаться задач");
     }
+
+    @Test
+    public void snapshotShouldNotSeeLaterChanges() {
+        Task task = new Task("task", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 9, 0));
+        taskManager.addTask(task);
+        Epic epic = new Epic("epic", "epic desc");
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask("subtask", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 11, 0));
+        taskManager.addSubtask(subtask);
+
+        TaskSnapshot snapshot = taskManager.snapshot();
+
+        taskManager.updateSubtask(new Subtask(subtask.getId(), "subtask", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 11, 0)));
+        taskManager.addSubtask(new Subtask("second", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 12, 0)));
+        taskManager.deleteTask(task);
+        taskManager.addTask(new Task("late", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 7, 0)));
+
+        assertEquals(task, snapshot.getTask(task.getId()), "Удалённая после снимка задача должна остаться в снимке");
+        assertEquals(3, snapshot.size());
+        assertEquals(Status.NEW, snapshot.getEpic(epic.getId()).getStatus(), "Статус эпика в снимке не должен пересчитываться");
+        assertEquals(List.of(subtask), snapshot.getSubtasksInEpic(epic.getId()), "Подзадачи эпика в снимке не должны меняться");
+        assertEquals(Status.NEW, snapshot.getSubtask(subtask.getId()).getStatus());
+        assertEquals(List.of(task, subtask), snapshot.getPrioritizedTasks(), "Расписание снимка должно остаться прежним");
+
+        assertEquals(Status.IN_PROGRESS, taskManager.getEpicById(epic.getId()).getStatus(), "Менеджер должен видеть изменения");
+        assertEquals(2, taskManager.getSubtasksInEpic(epic).size());
+        assertEquals(3, taskManager.getPrioritizedTasks().size());
+        assertEquals(List.of(taskManager.getEpicById(epic.getId())), taskManager.getTasksByStatus(Status.IN_PROGRESS),
+                "Индекс статусов должен ссылаться на текущую версию эпика");
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getTasks().clear(), "Снимок только для чтения");
+
+        taskManager.deleteEpic(epic);
+        assertTrue(taskManager.getSubtasks().isEmpty(), "Удаление эпика по старой ссылке должно удалить все его подзадачи");
+        assertEquals(1, snapshot.getSubtasks().size());
+    }
+
+    @Test
+    public void snapshotShouldBeReusedUntilNextChange() {
+        Epic epic = new Epic("epic", "epic desc");
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask("subtask", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 11, 0));
+        taskManager.addSubtask(subtask);
+
+        TaskSnapshot first = taskManager.snapshot();
+        taskManager.getSubtaskById(subtask.getId());
+        assertSame(first, taskManager.snapshot(), "Без изменений хранилища снимок должен переиспользоваться");
+
+        taskManager.updateSubtask(new Subtask(subtask.getId(), "subtask", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 11, 0)));
+        TaskSnapshot second = taskManager.snapshot();
+        assertNotSame(first, second, "После изменения нужен новый снимок");
+        assertSame(second, taskManager.snapshot());
+        assertEquals(Status.NEW, first.getEpic(epic.getId()).getStatus());
+        assertEquals(Status.DONE, second.getEpic(epic.getId()).getStatus());
+
+        taskManager.updateSubtask(new Subtask(subtask.getId(), "subtask", "desc", Status.NEW, epic.getId(), null, null));
+        assertEquals(Status.DONE, second.getEpic(epic.getId()).getStatus(), "Переиспользованный снимок не должен видеть последующих изменений");
+        assertEquals(List.of(subtask.getId()), second.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertNotSame(second, taskManager.snapshot());
+    }
 }
@@ -0,0 +1,82 @@
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.Test;
+import service.ConcurrentTaskManager;
+import service.FileBackedTaskManager;
+import service.InMemoryTaskManager;
+import service.InstrumentedTaskManager;
+import service.LatencyHistogram;
+import service.TaskMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstrumentedTaskManagerTest extends TaskManagerTest<InstrumentedTaskManager> {
+
+    @Override
+    protected InstrumentedTaskManager createManager() {
+        return new InstrumentedTaskManager(new InMemoryTaskManager(), new TaskMetrics());
+    }
+
+    @Test
+    public void shouldRecordLatencyOfEveryCall() {
+        Task task = new Task("task", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0));
+        taskManager.addTask(task);
+        taskManager.getTaskById(task.getId());
+        taskManager.getTaskById(task.getId());
+
+        TaskMetrics metrics = taskManager.getMetrics();
+        assertEquals(1, metrics.histogram("taskManager.addTask.nanos").getCount(), "Добавление должно быть замерено один раз");
+        assertEquals(2, metrics.histogram("taskManager.getTaskById.nanos").getCount(), "Оба чтения должны быть замерены");
+        assertEquals(2, metrics.histogram("history.add.nanos").getCount(), "Запись в историю тоже должна замеряться");
+        assertEquals(1, metrics.histogram("overlapCheck.scanLength").getCount(), "Проверка пересечений при добавлении должна быть учтена");
+        assertTrue(taskManager.getMetrics().dump().contains("taskManager.getTaskById.nanos count=2"), "Метрика должна попасть в отчёт");
+    }
+
+    @Test
+    public void shouldInstrumentConcurrentManager() {
+        InstrumentedTaskManager manager = new InstrumentedTaskManager(new ConcurrentTaskManager(), new TaskMetrics());
+        Task task = new Task("task", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0));
+        manager.addTask(task);
+        manager.getTaskById(task.getId());
+        manager.getHistory();
+
+        TaskMetrics metrics = manager.getMetrics();
+        assertEquals(1, metrics.histogram("history.add.nanos").getCount(), "Запись в историю должна замеряться и у ConcurrentTaskManager");
+        assertEquals(1, metrics.histogram("history.getHistory.nanos").getCount());
+        assertEquals(1, metrics.histogram("overlapCheck.scanLength").getCount(), "Проверка пересечений при добавлении должна быть учтена");
+    }
+
+    @Test
+    public void shouldRecordStorageWrites() throws IOException {
+        File file = File.createTempFile("instrumented", ".csv");
+        file.deleteOnExit();
+        TaskMetrics metrics = new TaskMetrics();
+        try (FileBackedTaskManager fileManager = new FileBackedTaskManager(file.getPath())) {
+            InstrumentedTaskManager manager = new InstrumentedTaskManager(fileManager, metrics);
+            manager.addTask(new Task("task", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0)));
+            fileManager.flush();
+        }
+        LatencyHistogram bytes = metrics.histogram("storage.snapshot.bytes");
+        assertTrue(bytes.getCount() > 0, "Запись снимка должна быть замерена");
+        assertTrue(bytes.getMax() > 0, "Размер записанного снимка должен быть положительным");
+    }
+
+    @Test
+    public void histogramPercentilesShouldStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount(), "Все значения должны быть учтены");
+        assertEquals(1000, histogram.getMax(), "Максимум должен быть точным");
+        assertEquals(500.5, histogram.getMean(), 1e-9, "Среднее должно быть точным");
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 500 && p50 <= 500 * 1.125, "p50 должен отличаться не больше чем на ширину корзины: " + p50);
+        assertEquals(1000, histogram.getPercentile(100), "p100 должен совпадать с максимумом");
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.Test;
+import service.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntObjectMapTest {
+    @Test
+    public void shouldPutGetAndRemove() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        assertNull(map.put(1, "one"));
+        assertEquals("one", map.put(1, "uno"), "put должен возвращать предыдущее значение");
+        map.put(-5, "minus five");
+        assertEquals("uno", map.get(1));
+        assertTrue(map.containsKey(-5));
+        assertEquals(2, map.size());
+        assertEquals("minus five", map.remove(-5));
+        assertNull(map.remove(-5));
+        assertFalse(map.containsKey(-5));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void shouldMatchHashMapOnRandomOperations() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map.toHashMap());
+        List<Integer> values = new ArrayList<>(map.values());
+        assertEquals(expected.size(), values.size());
+        assertTrue(values.containsAll(expected.values()));
+    }
+
+    @Test
+    public void snapshotShouldNotSeeLaterChanges() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int i = 0; i < 20; i++) {
+            map.put(i, "v" + i);
+        }
+        IntObjectMap<String> snapshot = map.snapshot();
+        map.put(1, "changed");
+        map.remove(2);
+        for (int i = 20; i < 100; i++) {
+            map.put(i, "v" + i);
+        }
+
+        assertEquals(20, snapshot.size(), "Размер снимка не должен меняться");
+        assertEquals("v1", snapshot.get(1), "Снимок должен хранить старое значение");
+        assertEquals("v2", snapshot.get(2), "Удаление после снимка не должно затрагивать снимок");
+        assertNull(snapshot.get(50));
+        assertEquals("changed", map.get(1));
+        assertEquals(99, map.size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.put(1, "x"), "Снимок только для чтения");
+
+        map.clear();
+        assertEquals(20, snapshot.size(), "Очистка карты не должна затрагивать снимок");
+    }
+
+    @Test
+    public void everySnapshotShouldKeepItsOwnState() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        List<IntObjectMap<Integer>> snapshots = new ArrayList<>();
+        List<Map<Integer, Integer>> states = new ArrayList<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(3_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            if (i % 5_000 == 0) {
+                snapshots.add(map.snapshot());
+                states.add(new HashMap<>(expected));
+            }
+        }
+        assertEquals(expected, map.toHashMap());
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertEquals(states.get(i), snapshots.get(i).toHashMap(), "Снимок " + i + " не должен видеть более поздних изменений");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.IntervalIndex;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntervalIndexTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 5, 5, 0, 0);
+
+    private IntervalIndex index;
+
+    @BeforeEach
+    public void createIndex() {
+        index = new IntervalIndex();
+    }
+
+    private Task task(int id, int startMinute, int durationMinutes) {
+        return new Task(id, "task " + id, "desc", Status.NEW, Duration.ofMinutes(durationMinutes), BASE.plusMinutes(startMinute));
+    }
+
+    @Test
+    public void shouldFindOverlappingTasks() {
+        index.add(task(1, 0, 60));
+        index.add(task(2, 60, 60));
+        index.add(task(3, 180, 60));
+
+        List<Task> overlapping = index.findOverlapping(task(4, 30, 60));
+        assertEquals(List.of(task(1, 0, 60), task(2, 60, 60)), overlapping, "Должны найтись обе пересекающиеся задачи");
+        assertTrue(index.findOverlapping(task(5, 120, 60)).isEmpty(), "Задача в свободном промежутке ни с чем не пересекается");
+    }
+
+    @Test
+    public void shouldIgnoreTaskWithSameId() {
+        index.add(task(1, 0, 60));
+        assertFalse(index.hasOverlapping(task(1, 30, 60)), "Задача не должна пересекаться сама с собой");
+    }
+
+    @Test
+    public void shouldRemoveTasks() {
+        Task task1 = task(1, 0, 60);
+        index.add(task1);
+        index.add(task(2, 120, 60));
+        assertTrue(index.remove(task1));
+        assertFalse(index.remove(task1), "Повторное удаление не должно ничего менять");
+        assertEquals(1, index.size());
+        assertFalse(index.hasOverlapping(task(3, 0, 60)));
+    }
+
+    @Test
+    public void shouldMatchLinearScanOnRandomData() {
+        Random random = new Random(42);
+        List<Task> all = new ArrayList<>();
+        for (int id = 1; id <= 500; id++) {
+            Task task = task(id, random.nextInt(10_000), random.nextInt(120));
+            all.add(task);
+            index.add(task);
+        }
+        for (int i = 0; i < 100; i++) {
+            Task removed = all.remove(random.nextInt(all.size()));
+            index.remove(removed);
+        }
+        all.sort(Comparator.comparing(Task::getStartTime).thenComparing(Task::getId));
+        assertEquals(all, index.toList(), "Обход индекса должен быть упорядочен по startTime");
+
+        for (int i = 0; i < 200; i++) {
+            Task probe = task(-1, random.nextInt(10_000), 1 + random.nextInt(120));
+            List<Task> expected = all.stream()
+                    .filter(t -> t.getStartTime().isBefore(probe.getEndTime()) && probe.getStartTime().isBefore(t.getEndTime()))
+                    .toList();
+            assertEquals(expected, index.findOverlapping(probe));
+        }
+    }
+
+    @Test
+    public void rebuildShouldMatchIncrementalInserts() {
+        List<Task> all = new ArrayList<>();
+        Random random = new Random(7);
+        for (int id = 1; id <= 300; id++) {
+            all.add(task(id, random.nextInt(5_000), random.nextInt(90)));
+        }
+        all.add(new Task(301, "no time", "desc", Status.NEW, null, null));
+        index.rebuild(all);
+
+        IntervalIndex incremental = new IntervalIndex();
+        all.forEach(incremental::add);
+        assertEquals(300, index.size(), "Задачи без startTime не попадают в индекс");
+        assertEquals(incremental.toList(), index.toList());
+        Task probe = task(-1, 2_500, 60);
+        assertEquals(incremental.findOverlapping(probe), index.findOverlapping(probe));
+    }
+
+    @Test
+    public void pagesShouldWalkScheduleInOrder() {
+        List<Task> all = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Task task = task(i + 1, i * 10, 0);
+            all.add(task);
+            index.add(task);
+        }
+        // у задач без длительности одинаковое время начала допустимо, порядок между ними задаёт id
+        index.add(task(101, 500, 0));
+
+        assertEquals(all.subList(51, 56), index.page(BASE.plusMinutes(505), 5), "Страница должна начинаться с первой задачи не раньше from");
+        List<Task> collected = new ArrayList<>();
+        List<Task> page = index.page(BASE, 7);
+        while (!page.isEmpty()) {
+            collected.addAll(page);
+            page = index.pageAfter(page.get(page.size() - 1), 7);
+        }
+        assertEquals(index.toList(), collected, "Постраничный обход должен вернуть всё расписание без пропусков и повторов");
+    }
+
+    @Test
+    public void windowQueriesShouldMatchLinearScan() {
+        Random random = new Random(7);
+        List<Task> all = new ArrayList<>();
+        for (int id = 1; id <= 500; id++) {
+            Task task = task(id, random.nextInt(10_000), random.nextInt(120));
+            all.add(task);
+        }
+        index.rebuild(all);
+        all.sort(Comparator.comparing(Task::getStartTime).thenComparing(Task::getId));
+
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime from = BASE.plusMinutes(random.nextInt(10_000));
+            LocalDateTime to = from.plusMinutes(random.nextInt(600));
+            List<Task> starting = new ArrayList<>();
+            List<Task> intersecting = new ArrayList<>();
+            for (Task task : all) {
+                if (!task.getStartTime().isBefore(from) && task.getStartTime().isBefore(to)) {
+                    starting.add(task);
+                }
+                if (task.getStartTime().isBefore(to) && from.isBefore(task.getEndTime())) {
+                    intersecting.add(task);
+                }
+            }
+            assertEquals(starting, index.findStartingBetween(from, to), "Задачи, начинающиеся в окне, должны совпасть с перебором");
+            assertEquals(intersecting, index.findIntersecting(from, to), "Задачи, пересекающие окно, должны совпасть с перебором");
+        }
+        assertThrows(IllegalArgumentException.class, () -> index.findIntersecting(BASE.plusDays(1), BASE), "Окно с концом раньше начала недопустимо");
+    }
+
+    @Test
+    public void snapshotShouldKeepScheduleAtTheMomentOfSnapshot() {
+        Random random = new Random(11);
+        List<Task> all = new ArrayList<>();
+        for (int id = 1; id <= 300; id++) {
+            all.add(task(id, id * 10, 5));
+        }
+        index.rebuild(all);
+        IntervalIndex snapshot = index.snapshot();
+        List<Task> expected = index.toList();
+
+        for (int i = 0; i < 300; i++) {
+            Task task = all.get(random.nextInt(all.size()));
+            if (random.nextBoolean()) {
+                index.remove(task);
+            } else {
+                index.add(task(1_000 + i, random.nextInt(3_000), 5));
+            }
+        }
+
+        assertEquals(expected, snapshot.toList(), "Изменения после снимка не должны быть видны в нём");
+        assertEquals(300, snapshot.size());
+        assertEquals(List.of(all.get(0)), snapshot.findIntersecting(BASE.plusMinutes(10), BASE.plusMinutes(12)));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(task(5_000, 0, 5)), "Снимок только для чтения");
+        List<Task> current = new ArrayList<>();
+        index.forEach(current::add);
+        assertEquals(index.toList(), current);
+        assertEquals(index.size(), current.size());
+    }
+}
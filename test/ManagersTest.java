@@ -3,6 +3,7 @@ import service.Managers;
 import service.HistoryManager;
 import service.InMemoryTaskManager;
 import service.InMemoryHistoryManager;
+import service.ConcurrentTaskManager;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,4 +24,11 @@ public class ManagersTest {
         assertTrue(historyManager instanceof InMemoryHistoryManager,
                 "Managers.getDefaultHistory() должен возвращать экземпляр InMemoryHistoryManager.");
     }
+
+    @Test
+    public void testGetConcurrentReturnsConcurrentTaskManager() {
+        TaskManager manager = Managers.getConcurrent();
+        assertTrue(manager instanceof ConcurrentTaskManager,
+                "Managers.getConcurrent() должен возвращать экземпляр ConcurrentTaskManager.");
+    }
 }
@@ -2,15 +2,24 @@ import model.Epic;
 import model.Status;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import service.BatchOutcome;
+import service.TaskEvent;
 import service.TaskManager;
+import service.TaskSubscription;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -120,6 +129,25 @@ public abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(3, epicSubtasks.get(0).getId(), "Оставшаяся подзадача должна иметь id 3");
     }
 
+    @Test
+    public void shouldMoveSubtaskToAnotherEpic() {
+        Epic from = new Epic("epic 1", "epic desc");
+        Epic to = new Epic("epic 2", "epic desc");
+        taskManager.addEpic(from);
+        taskManager.addEpic(to);
+        Subtask subtask = new Subtask("subtask", "desc", Status.DONE, from.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0));
+        taskManager.addSubtask(subtask);
+
+        taskManager.updateSubtask(new Subtask(subtask.getId(), "subtask", "desc", Status.DONE, to.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 13, 0)));
+        assertTrue(taskManager.getSubtasksInEpic(from).isEmpty(), "Подзадача должна уйти из прежнего эпика");
+        assertEquals(Status.NEW, taskManager.getEpicById(from.getId()).getStatus());
+        assertEquals(List.of(subtask.getId()), taskManager.getSubtasksInEpic(to).stream().map(Subtask::getId).toList());
+        assertEquals(Status.DONE, taskManager.getEpicById(to.getId()).getStatus());
+
+        taskManager.updateSubtask(new Subtask(subtask.getId(), "subtask", "desc", Status.NEW, 999, null, null));
+        assertEquals(to.getId(), taskManager.getSubtaskById(subtask.getId()).getEpicId(), "Перенос в несуществующий эпик должен отклоняться");
+    }
+
     @Test
     public void shouldUpdateSubtask() {
         Epic epic = new Epic("epic 1", "epic desc");
@@ -205,5 +233,303 @@ public abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(taskStatus, addedTask.getStatus(), "Статус задачи должен остаться неизменным");
     }
 
+    @Test
+    public void prioritizedPagesShouldBeReadOnlyAndStartFromCursor() {
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(new Task("task " + i, "desc", Status.NEW, Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 8 + i, 0)));
+        }
+        taskManager.addAll(batch);
+        taskManager.addTask(new Task("untimed", "desc", Status.NEW, null, null));
+
+        List<Task> page = taskManager.getPrioritizedTasks(LocalDateTime.of(2025, 5, 5, 10, 15), 3);
+        assertEquals(batch.subList(3, 6), page, "Страница должна начинаться с первой задачи, начинающейся не раньше from");
+        assertThrows(UnsupportedOperationException.class, () -> page.add(batch.get(0)), "Страница должна быть только для чтения");
+        assertEquals(batch.subList(6, 9), taskManager.getPrioritizedTasksAfter(page.get(2), 3), "Следующая страница должна идти сразу за курсором");
+        assertEquals(batch.subList(9, 10), taskManager.getPrioritizedTasksAfter(batch.get(8), 3), "Последняя страница может быть неполной");
+
+        List<Task> streamed = new ArrayList<>();
+        taskManager.forEachPrioritized(streamed::add);
+        assertEquals(batch, streamed, "Обход должен пройти расписание по порядку");
+        assertEquals(11, taskManager.getTaskView().size(), "Представление должно видеть все задачи");
+        assertThrows(UnsupportedOperationException.class, () -> taskManager.getTaskView().clear(), "Представление должно быть только для чтения");
+    }
+
+    @Test
+    public void shouldAnswerCalendarQueries() {
+        Task monday = new Task("monday", "desc", Status.NEW, Duration.ofHours(2), LocalDateTime.of(2025, 5, 5, 9, 0));
+        Task overnight = new Task("overnight", "desc", Status.NEW, Duration.ofHours(10), LocalDateTime.of(2025, 5, 6, 22, 0));
+        Task friday = new Task("friday", "desc", Status.NEW, Duration.ofHours(1), LocalDateTime.of(2025, 5, 9, 17, 0));
+        Task nextWeek = new Task("next week", "desc", Status.NEW, Duration.ofHours(1), LocalDateTime.of(2025, 5, 12, 9, 0));
+        taskManager.addAll(List.of(friday, monday, nextWeek, overnight));
+
+        LocalDateTime weekStart = LocalDateTime.of(2025, 5, 5, 0, 0);
+        LocalDateTime saturday = LocalDateTime.of(2025, 5, 10, 0, 0);
+        assertEquals(List.of(monday, overnight, friday), taskManager.getTasksStartingBetween(weekStart, saturday),
+                "Должны вернуться задачи, начинающиеся с понедельника по пятницу, по порядку");
+        assertEquals(List.of(overnight), taskManager.getTasksActiveAt(LocalDateTime.of(2025, 5, 7, 3, 0)),
+                "Ночная задача должна быть активна после полуночи");
+        assertTrue(taskManager.getTasksActiveAt(LocalDateTime.of(2025, 5, 5, 11, 0)).isEmpty(),
+                "Задача не активна в момент своего окончания");
+        assertEquals(List.of(overnight), taskManager.getTasksIntersecting(LocalDateTime.of(2025, 5, 7, 0, 0), LocalDateTime.of(2025, 5, 8, 0, 0)),
+                "Окно среды должно пересекаться только с ночной задачей");
+    }
+
+    @Test
+    public void shouldFindEarliestFreeSlot() {
+        taskManager.addAll(List.of(
+                new Task("morning", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 9, 0)),
+                new Task("short gap after", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 10, 30)),
+                new Task("afternoon", "desc", Status.NEW, Duration.ofMinutes(240), LocalDateTime.of(2025, 5, 5, 12, 0))));
+
+        assertEquals(LocalDateTime.of(2025, 5, 5, 10, 0),
+                taskManager.findEarliestSlot(Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 9, 15)),
+                "Получасовая задача должна встать в первый подходящий промежуток");
+        assertEquals(LocalDateTime.of(2025, 5, 5, 16, 0),
+                taskManager.findEarliestSlot(Duration.ofMinutes(45), LocalDateTime.of(2025, 5, 5, 9, 15)),
+                "Промежутки короче длительности должны пропускаться");
+        assertEquals(LocalDateTime.of(2025, 5, 6, 9, 0),
+                taskManager.findEarliestSlot(Duration.ofMinutes(90), LocalDateTime.of(2025, 5, 5, 9, 15), LocalTime.of(9, 0), LocalTime.of(17, 0)),
+                "Слот, не помещающийся до конца рабочего дня, должен переноситься на утро следующего дня");
+
+        Task placed = new Task("placed", "desc", Status.NEW, Duration.ofMinutes(45), taskManager.findEarliestSlot(Duration.ofMinutes(45), LocalDateTime.of(2025, 5, 5, 8, 30)));
+        assertFalse(taskManager.isTaskOverlapping(placed), "Задача в найденном слоте не должна пересекаться с другими");
+        assertThrows(IllegalArgumentException.class,
+                () -> taskManager.findEarliestSlot(Duration.ofHours(9), LocalDateTime.of(2025, 5, 5, 9, 0), LocalTime.of(9, 0), LocalTime.of(17, 0)),
+                "Слот длиннее рабочего дня найти нельзя");
+    }
+
+    @Test
+    public void statusIndexShouldFollowDerivedEpicStatus() {
+        Epic epic = new Epic("epic", "desc");
+        taskManager.addEpic(epic);
+        Subtask first = new Subtask("first", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 9, 0));
+        Subtask second = new Subtask("second", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 10, 0));
+        Task task = new Task("task", "desc", Status.IN_PROGRESS, null, null);
+        taskManager.addSubtask(first);
+        taskManager.addSubtask(second);
+        taskManager.addTask(task);
+
+        assertEquals(List.of(epic), taskManager.getTasksByStatus(TaskType.EPIC, Status.IN_PROGRESS), "Эпик со смешанными подзадачами должен быть IN_PROGRESS");
+        assertEquals(2, taskManager.getStatusCount(Status.IN_PROGRESS), "IN_PROGRESS должны быть задача и эпик");
+        assertEquals(List.of(second), taskManager.getTasksByStatus(TaskType.SUBTASK, Status.DONE));
+
+        taskManager.updateSubtask(new Subtask(first.getId(), "first", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 9, 0)));
+        assertEquals(1, taskManager.getStatusCount(TaskType.EPIC, Status.DONE), "После обновления подзадачи эпик должен перейти в DONE");
+        assertEquals(0, taskManager.getStatusCount(TaskType.EPIC, Status.IN_PROGRESS), "Эпик не должен оставаться в прежней корзине");
+        assertEquals(2, taskManager.getStatusCount(TaskType.SUBTASK, Status.DONE), "Обновлённая подзадача должна перейти в DONE");
+
+        taskManager.deleteTask(task);
+        taskManager.clearSubtasks();
+        assertEquals(0, taskManager.getStatusCount(Status.DONE), "После очистки подзадач DONE не должно остаться ничего");
+        assertEquals(List.of(epic), taskManager.getTasksByStatus(Status.NEW), "Эпик без подзадач должен вернуться в NEW");
+        assertEquals(0, taskManager.getStatusCount(Status.IN_PROGRESS), "Удалённая задача не должна оставаться в индексе");
+    }
+
+    @Test
+    public void searchShouldMatchPrefixesOfAllTerms() {
+        Task report = new Task("Квартальный отчёт", "Собрать данные по продажам", Status.NEW, null, null);
+        Task review = new Task("Code review", "Проверить отчёт по продажам", Status.NEW, null, null);
+        Epic release = new Epic("Release 2.0", "Подготовить релиз");
+        taskManager.addTask(report);
+        taskManager.addTask(review);
+        taskManager.addEpic(release);
+
+        assertEquals(List.of(report, review), taskManager.search("отч", 10), "Префикс должен находить слово и в названии, и в описании");
+        assertEquals(List.of(review), taskManager.search("ОТЧЁТ review", 10), "Все слова запроса должны совпасть, регистр не важен");
+        assertEquals(List.of(report), taskManager.search("продаж", 1), "Результат должен обрезаться до limit");
+        assertEquals(List.of(release), taskManager.search("release 2", 10), "Цифры тоже являются словами");
+
+        taskManager.updateTask(new Task(review.getId(), "Code review", "Проверить тесты", Status.NEW, null, null));
+        assertEquals(List.of(report), taskManager.search("отчёт", 10), "Старое описание не должно находиться после обновления");
+        taskManager.deleteTask(report);
+        assertTrue(taskManager.search("отчёт", 10).isEmpty(), "Удалённая задача не должна находиться");
+        assertTrue(taskManager.search("   ", 10).isEmpty(), "Пустой запрос ничего не находит");
+    }
+
+    @Test
+    public void addAllShouldRejectOverlapsInsideBatchAndWithStoredTasks() {
+        taskManager.addTask(new Task("stored", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 10, 0)));
+        Epic epic = new Epic("epic", "desc");
+        taskManager.addEpic(epic);
+
+        List<Task> batch = List.of(
+                new Subtask("late", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 12, 30)),
+                new Task("clash stored", "desc", Status.NEW, Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 10, 30)),
+                new Subtask("early", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 12, 0)),
+                new Subtask("orphan", "desc", Status.NEW, 999, null, null),
+                new Subtask("done", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(30), LocalDateTime.of(2025, 5, 5, 14, 0)),
+                new Task("untimed", "desc", Status.NEW, null, null));
+
+        List<BatchOutcome> outcomes = taskManager.addAll(batch);
+
+        assertEquals(List.of(BatchOutcome.OVERLAPPING, BatchOutcome.OVERLAPPING, BatchOutcome.APPLIED,
+                BatchOutcome.EPIC_NOT_FOUND, BatchOutcome.APPLIED, BatchOutcome.APPLIED), outcomes,
+                "Из пересекающихся задач пакета должна остаться начинающаяся раньше");
+        assertEquals(2, taskManager.getTasks().size(), "Должны быть сохранены исходная задача и задача без времени");
+        assertEquals(2, taskManager.getSubtasksInEpic(epic).size(), "К эпику должны быть привязаны две принятые подзадачи");
+        assertEquals(Status.IN_PROGRESS, taskManager.getEpicById(epic.getId()).getStatus(), "Статус эпика должен быть пересчитан");
+        assertEquals(LocalDateTime.of(2025, 5, 5, 12, 0), epic.getStartTime(), "Начало эпика должно быть пересчитано");
+        assertEquals(3, taskManager.getPrioritizedTasks().size(), "В расписании должны быть только принятые задачи со временем");
+    }
+
+    @Test
+    public void updateAllShouldValidateAgainstNewVersionsOfBatch() {
+        Epic epic = new Epic("epic", "desc");
+        taskManager.addEpic(epic);
+        Subtask first = new Subtask("first", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 10, 0));
+        Subtask second = new Subtask("second", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 11, 0));
+        taskManager.addAll(List.of(first, second));
+
+        // задачи меняются местами: по отдельности каждое обновление пересеклось бы со старой версией другой
+        List<BatchOutcome> outcomes = taskManager.updateAll(List.of(
+                new Subtask(first.getId(), "first", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 11, 0)),
+                new Subtask(second.getId(), "second", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 10, 0)),
+                new Task(999, "missing", "desc", Status.NEW, null, null)));
+
+        assertEquals(List.of(BatchOutcome.APPLIED, BatchOutcome.APPLIED, BatchOutcome.NOT_FOUND), outcomes);
+        assertEquals(Status.DONE, taskManager.getEpicById(epic.getId()).getStatus(), "Статус эпика должен быть пересчитан по новым версиям");
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        assertEquals(2, prioritized.size(), "Старые версии не должны оставаться в расписании");
+        assertEquals(second.getId(), prioritized.get(0).getId(), "Порядок должен соответствовать новым startTime");
+    }
+
+    @Test
+    public void deleteAllShouldRemoveItemsAndRecomputeEpic() {
+        Epic epic = new Epic("epic", "desc");
+        taskManager.addEpic(epic);
+        Subtask done = new Subtask("done", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 10, 0));
+        Subtask fresh = new Subtask("new", "desc", Status.NEW, epic.getId(), Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 11, 0));
+        Task task = new Task("task", "desc", Status.NEW, Duration.ofMinutes(60), LocalDateTime.of(2025, 5, 5, 12, 0));
+        taskManager.addAll(List.of(done, fresh, task));
+
+        List<BatchOutcome> outcomes = taskManager.deleteAll(List.of(fresh, task, task));
+
+        assertEquals(List.of(BatchOutcome.APPLIED, BatchOutcome.APPLIED, BatchOutcome.NOT_FOUND), outcomes);
+        assertTrue(taskManager.getTasks().isEmpty(), "Задача должна быть удалена");
+        assertEquals(List.of(done), taskManager.getSubtasksInEpic(epic), "В эпике должна остаться одна подзадача");
+        assertEquals(Status.DONE, taskManager.getEpicById(epic.getId()).getStatus(), "Статус эпика должен быть пересчитан");
+        assertEquals(List.of(done), taskManager.getPrioritizedTasks(), "Удалённые задачи не должны оставаться в расписании");
+    }
+
+    @Test
+    public void shouldPublishChangeEventsInOrder() throws InterruptedException {
+        List<TaskEvent> received = new CopyOnWriteArrayList<>();
+        TaskSubscription subscription = taskManager.subscribe(received::addAll);
+        LocalDateTime start = LocalDateTime.of(2025, 5, 5, 13, 0);
+
+        Epic epic = new Epic("epic", "desc");
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask("subtask", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(30), start);
+        taskManager.addSubtask(subtask);
+        taskManager.updateSubtask(new Subtask(subtask.getId(), "renamed", "desc", Status.DONE, epic.getId(), Duration.ofMinutes(30), start));
+        taskManager.deleteSubtask(taskManager.getSubtaskById(subtask.getId()));
+        Task task = new Task("task", "desc", Status.NEW, null, null);
+        taskManager.addTask(task);
+        taskManager.deleteTask(task);
+
+        awaitEvents(received, 8);
+        subscription.close();
+        assertEquals(List.of(TaskEvent.Type.ADDED, TaskEvent.Type.ADDED, TaskEvent.Type.EPIC_CHANGED, TaskEvent.Type.UPDATED,
+                        TaskEvent.Type.DELETED, TaskEvent.Type.EPIC_CHANGED, TaskEvent.Type.ADDED, TaskEvent.Type.DELETED),
+                received.stream().map(TaskEvent::getType).toList(), "Переименование подзадачи не меняет статус и время эпика");
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i + 1, received.get(i).getSequence(), "Номера событий должны идти подряд");
+        }
+        assertEquals(TaskType.SUBTASK, received.get(1).getTaskType());
+        assertEquals(Status.DONE, received.get(2).getTask().getStatus());
+        assertEquals(task.getId(), received.get(7).getId());
+        assertEquals(0, subscription.getDroppedCount());
+    }
 
+    @Test
+    public void clearShouldPublishSingleClearedEvent() throws InterruptedException {
+        Epic epic = new Epic("epic", "desc");
+        taskManager.addEpic(epic);
+        taskManager.addSubtask(new Subtask("subtask 1", "desc", Status.DONE, epic.getId(), null, null));
+        taskManager.addSubtask(new Subtask("subtask 2", "desc", Status.DONE, epic.getId(), null, null));
+        taskManager.addTask(new Task("task 1", "desc", Status.NEW, null, null));
+        taskManager.addTask(new Task("task 2", "desc", Status.NEW, null, null));
+
+        List<TaskEvent> received = new CopyOnWriteArrayList<>();
+        TaskSubscription subscription = taskManager.subscribe(received::addAll);
+        taskManager.clearTasks();
+        taskManager.clearSubtasks();
+        taskManager.clearEpics();
+
+        awaitEvents(received, 4);
+        subscription.close();
+        assertEquals(List.of(TaskEvent.Type.CLEARED, TaskEvent.Type.CLEARED, TaskEvent.Type.EPIC_CHANGED, TaskEvent.Type.CLEARED),
+                received.stream().map(TaskEvent::getType).toList(), "Очистка публикует одно событие, а не удаление каждой задачи");
+        assertEquals(List.of(TaskType.TASK, TaskType.SUBTASK, TaskType.EPIC, TaskType.EPIC),
+                received.stream().map(TaskEvent::getTaskType).toList());
+        assertEquals(Status.NEW, received.get(2).getTask().getStatus(), "Эпик без подзадач становится NEW");
+    }
+
+    @Test
+    public void failingSubscriberShouldGetOverflowAndLaterEvents() throws InterruptedException {
+        CountDownLatch failed = new CountDownLatch(1);
+        List<TaskEvent> received = new CopyOnWriteArrayList<>();
+        TaskSubscription subscription = taskManager.subscribe(events -> {
+            if (failed.getCount() > 0) {
+                failed.countDown();
+                throw new IllegalStateException("сбой подписчика");
+            }
+            received.addAll(events);
+        });
+
+        Task lost = new Task("lost", "desc", Status.NEW, null, null);
+        taskManager.addTask(lost);
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        Task delivered = new Task("delivered", "desc", Status.NEW, null, null);
+        taskManager.addTask(delivered);
+
+        awaitEvents(received, 2);
+        subscription.close();
+        assertEquals(TaskEvent.Type.OVERFLOW, received.get(0).getType(), "Подписчик должен узнать о необработанной пачке");
+        assertEquals(1, received.get(0).getSequence());
+        assertEquals(TaskEvent.Type.ADDED, received.get(1).getType());
+        assertEquals(delivered.getId(), received.get(1).getId());
+        assertEquals(1, subscription.getDroppedCount(), "Необработанные события учитываются как отброшенные");
+    }
+
+    @Test
+    public void slowSubscriberShouldNotBlockWriters() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<TaskEvent> received = new CopyOnWriteArrayList<>();
+        TaskSubscription subscription = taskManager.subscribe(events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.addAll(events);
+        }, 16);
+
+        for (int i = 0; i < 1_000; i++) {
+            taskManager.addTask(new Task("task " + i, "desc", Status.NEW, null, null));
+        }
+        assertTrue(subscription.getDroppedCount() > 0, "Переполненная очередь должна отбрасывать события, а не ждать подписчика");
+        release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((received.isEmpty() || received.get(received.size() - 1).getType() != TaskEvent.Type.OVERFLOW)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        TaskEvent overflow = received.get(received.size() - 1);
+        assertEquals(TaskEvent.Type.OVERFLOW, overflow.getType(), "Подписчик должен узнать о потерянных событиях");
+        assertEquals(1_000, overflow.getSequence());
+        long delivered = received.stream().filter(event -> event.getType() != TaskEvent.Type.OVERFLOW).count();
+        assertEquals(1_000, delivered + subscription.getDroppedCount(), "Каждое событие доставлено или учтено как отброшенное");
+        subscription.close();
+    }
+
+    private static void awaitEvents(List<TaskEvent> received, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, received.size());
+    }
 }